@@ -0,0 +1,62 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A base class for {@link Event}s that carries the event's {@link Future} with the
+ * event itself.
+ * <p>
+ * The {@link MessageBusImpl} attaches the Future when the event is sent and detaches
+ * it when the event is completed, so neither sending nor completing looks up a shared
+ * map. A Future that is never completed goes away together with its event. Events
+ * sent with {@link MessageBusImpl#sendEventNoReply(Event)} get no Future at all.
+ * Events that do not extend this class still work, through the bus's map of
+ * unresolved events.
+ *
+ * @param <T> The type of the result expected for the event.
+ */
+public abstract class AbstractEvent<T> implements Event<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractEvent, Future> FUTURE =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractEvent.class, Future.class, "future");
+
+    private volatile Future<T> future; // The Future of the latest send, null once completed
+    private long logSequence; // Latest broadcast published when the event was queued, published with the event by the queue
+
+    /**
+     * Attaches the Future of a send to this event.
+     *
+     * @param future The Future to resolve when the event is completed.
+     */
+    final void attachFuture(Future<T> future) {
+        this.future = future;
+    }
+
+    /**
+     * Detaches the Future of this event. Only the first caller gets it, so the Future
+     * is resolved once even if the event is completed concurrently.
+     *
+     * @return The attached Future, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    final Future<T> detachFuture() {
+        return future == null ? null : (Future<T>) FUTURE.getAndSet(this, null);
+    }
+
+    /**
+     * Records the sequence number of the latest broadcast published to the shared
+     * {@link BroadcastLog} when this event is queued.
+     *
+     * @param logSequence The sequence number.
+     */
+    final void stampLogSequence(long logSequence) {
+        this.logSequence = logSequence;
+    }
+
+    /**
+     * @return The sequence number recorded by the latest {@link #stampLogSequence(long)}, 0 if none.
+     */
+    final long getLogSequence() {
+        return logSequence;
+    }
+}
@@ -0,0 +1,185 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs microservices as actors on a fixed-size pool of threads, instead of giving
+ * every microservice a thread of its own that blocks on its message queue.
+ * <p>
+ * An actor is scheduled on the pool only when a message was delivered to it. Once
+ * scheduled, it handles at most {@code batchLimit} messages and then yields the thread,
+ * going back to the end of the pool's queue if more messages are waiting. The number
+ * of threads therefore depends on the number of cores, not on the number of sensors.
+ * <p>
+ * Callbacks of an actor must not block: a callback waiting for another actor would
+ * hold a pool thread the other actor may need. In particular, queues limited with
+ * {@link OverflowPolicy#BLOCK} are best avoided in this mode. A microservice whose
+ * {@link MicroService#initialize()} runs its own loop (like the TimeService) must
+ * keep a thread of its own.
+ * <p>
+ * The mode is enabled through the {@value #PROPERTY} system property
+ * (e.g. {@code -Dmics.actors=4} for four threads, {@code -Dmics.actors=0} for one
+ * thread per core).
+ */
+public final class ActorScheduler {
+    /**
+     * The system property enabling the actor mode and setting the number of threads.
+     */
+    public static final String PROPERTY = "mics.actors";
+
+    /**
+     * The default maximal number of messages an actor handles before yielding.
+     */
+    public static final int DEFAULT_BATCH_LIMIT = 64;
+
+    /**
+     * The scheduling state of a single microservice.
+     */
+    final class Actor implements Runnable {
+        private final MicroService service;
+        private final AtomicBoolean scheduled; // Set while the actor is queued on the pool or running
+        private boolean started; // Whether the microservice was registered and initialized
+
+        private Actor(MicroService service) {
+            this.service = service;
+            this.scheduled = new AtomicBoolean(true); // Scheduled for its initialization
+            this.started = false;
+        }
+
+        /**
+         * Schedules the actor after a message was delivered to it, unless it is
+         * already scheduled. Called by the message-bus on the sender's thread.
+         */
+        void signal() {
+            if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+                pool.execute(this);
+            }
+        }
+
+        /**
+         * Handles a slice of the actor's messages on a pool thread.
+         */
+        @Override
+        public void run() {
+            boolean terminated;
+            try {
+                if (!started) {
+                    started = true;
+                    terminated = service.startActor();
+                } else {
+                    terminated = service.runActorSlice(batchLimit);
+                }
+            } catch (RuntimeException e) {
+                // Same as an exception ending the microservice's thread, minus the dangling registration
+                System.err.println("MicroService " + service.getName() + " failed: " + e);
+                MessageBusImpl.getInstance().unregister(service);
+                terminated = true;
+            }
+            if (terminated) {
+                release();
+                return;
+            }
+            if (MessageBusImpl.getInstance().hasMessages(service)) {
+                pool.execute(this); // Yields to the other actors, still scheduled
+                return;
+            }
+            MessageBusImpl.getInstance().parkActor(service); // Lets the next broadcast schedule it
+            scheduled.set(false);
+            // A message delivered just before the flag was cleared did not schedule the actor
+            if (MessageBusImpl.getInstance().hasMessages(service)) {
+                signal();
+            }
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int batchLimit; // Maximal number of messages handled per slice
+    private final AtomicInteger live; // Actors started and not terminated yet, plus one until close()
+
+    /**
+     * Constructs a scheduler with its own pool of threads.
+     *
+     * @param threads    The number of pool threads.
+     * @param batchLimit The maximal number of messages an actor handles before yielding.
+     * @throws IllegalArgumentException if {@code threads} or {@code batchLimit} is not positive.
+     */
+    public ActorScheduler(int threads, int batchLimit) {
+        if (threads <= 0 || batchLimit <= 0) {
+            throw new IllegalArgumentException("Threads and batch limit must be positive: " + threads + ", " + batchLimit);
+        }
+        AtomicInteger threadCount = new AtomicInteger(0);
+        this.pool = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "Actor-" + threadCount.incrementAndGet()));
+        this.batchLimit = batchLimit;
+        this.live = new AtomicInteger(1); // Keeps the pool open while actors are being started
+    }
+
+    /**
+     * Reads the number of pool threads from the {@value #PROPERTY} system property.
+     *
+     * @return A scheduler with the requested number of threads (one per core for 0 or a
+     *         negative number), or null if the property is missing or invalid.
+     */
+    public static ActorScheduler fromProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null) {
+            return null;
+        }
+        try {
+            int threads = Integer.parseInt(value.trim());
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            return new ActorScheduler(threads, DEFAULT_BATCH_LIMIT);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid actor thread count '" + value + "', using a thread per microservice");
+            return null;
+        }
+    }
+
+    /**
+     * Starts a microservice as an actor: it is registered and initialized on a pool
+     * thread, and then runs whenever messages are delivered to it.
+     *
+     * @param service The microservice to start. It must not be started more than once.
+     */
+    public void start(MicroService service) {
+        Actor actor = new Actor(service);
+        service.attachActor(actor); // Before registration, so that no delivery misses the actor
+        live.incrementAndGet();
+        pool.execute(actor);
+    }
+
+    /**
+     * Declares that no more actors will be started: the pool stops, and lets the JVM
+     * exit, as soon as every started actor has terminated.
+     */
+    public void close() {
+        release();
+    }
+
+    /**
+     * Waits until every actor has terminated and the pool has stopped.
+     *
+     * @param timeout The maximal time to wait.
+     * @param unit    The unit of {@code timeout}.
+     * @return true if the pool stopped, false if the time is up.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Drops one of the reasons to keep the pool running.
+     */
+    private void release() {
+        if (live.decrementAndGet() == 0) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package bgu.spl.mics;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A microservice message queue holding a limited number of {@link Event}s.
+ * <p>
+ * When an event arrives and {@code capacity} events are already queued, the queue's
+ * {@link OverflowPolicy} decides whether the sender waits, an event is dropped, or
+ * the event goes to a side buffer. Broadcasts are always accepted, so ticks and
+ * termination notices can never be lost or deadlock two services sending to each
+ * other. Every time the policy fires, the matching counter is incremented.
+ * <p>
+ * Messages are always taken in the order they were accepted.
+ */
+public class BoundedMailbox extends AbstractQueue<Message> implements BlockingQueue<Message> {
+    private final int capacity; // Maximal number of events in the queue
+    private final OverflowPolicy policy; // What to do with an event once the queue is full
+    private final ArrayDeque<Message> queue; // Accepted messages, in order
+    private final ArrayDeque<Message> spill; // Side buffer used by SPILL, newer than every message in queue
+    private int queuedEvents; // Number of events in queue
+    private int spilledEvents; // Number of events in spill
+    private final Consumer<Message> onDrop; // Called with every dropped event, outside the lock
+    private final Map<OverflowPolicy, LongAdder> overflowCounters; // Shared counters, one per policy
+    private long overflows; // How many times the policy fired for this queue
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+
+    /**
+     * Constructs an empty bounded queue.
+     *
+     * @param capacity         The maximal number of events the queue holds.
+     * @param policy           What to do with an event once the queue is full.
+     * @param onDrop           Called with every event dropped by the policy.
+     * @param overflowCounters Counters incremented every time a policy fires.
+     *                         Must contain a counter for every {@link OverflowPolicy}.
+     * @throws IllegalArgumentException if {@code capacity} is not positive.
+     */
+    public BoundedMailbox(int capacity, OverflowPolicy policy, Consumer<Message> onDrop,
+                          Map<OverflowPolicy, LongAdder> overflowCounters) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queue = new ArrayDeque<>();
+        this.spill = new ArrayDeque<>();
+        this.queuedEvents = 0;
+        this.spilledEvents = 0;
+        this.onDrop = onDrop;
+        this.overflowCounters = overflowCounters;
+        this.overflows = 0;
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * @return The maximal number of events the queue holds.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The overflow policy of this queue.
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return How many times the overflow policy fired for this queue.
+     */
+    public long getOverflowCount() {
+        lock.lock();
+        try {
+            return overflows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts a message, applying the overflow policy if it is an event and the queue
+     * is full. With {@link OverflowPolicy#BLOCK} (or a full side buffer) the caller waits;
+     * an interrupt while waiting drops the event the same way a drop policy would, and
+     * keeps the interrupt status.
+     *
+     * @param m The message to add.
+     * @return true if the message was queued, false if it was dropped.
+     */
+    @Override
+    public boolean offer(Message m) {
+        try {
+            return insert(m, false, 0);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            onDrop.accept(m);
+            return false;
+        }
+    }
+
+    @Override
+    public void put(Message m) throws InterruptedException {
+        insert(m, false, 0);
+    }
+
+    @Override
+    public boolean offer(Message m, long timeout, TimeUnit unit) throws InterruptedException {
+        return insert(m, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public Message poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message peek() {
+        lock.lock();
+        try {
+            return queue.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - queuedEvents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            Message m;
+            while (drained < maxElements && (m = dequeue()) != null) {
+                c.add(m);
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size() + spill.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued messages, in order.
+     *
+     * @return An iterator that does not support removal.
+     */
+    @Override
+    public Iterator<Message> iterator() {
+        lock.lock();
+        try {
+            List<Message> snapshot = new ArrayList<>(queue.size() + spill.size());
+            snapshot.addAll(queue);
+            snapshot.addAll(spill);
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts a message according to the overflow policy.
+     *
+     * @return true if the message was queued, false if it was dropped or the wait timed out.
+     */
+    private boolean insert(Message m, boolean timed, long nanos) throws InterruptedException {
+        if (m == null) {
+            throw new NullPointerException();
+        }
+        Message dropped = null;
+        boolean accepted;
+        lock.lock();
+        try {
+            if (!(m instanceof Event<?>)) {
+                enqueue(m, false);
+                return true;
+            }
+            if (queuedEvents < capacity && spill.isEmpty()) {
+                enqueue(m, true);
+                return true;
+            }
+            switch (policy) {
+                case DROP_NEWEST:
+                    fired(OverflowPolicy.DROP_NEWEST);
+                    dropped = m;
+                    accepted = false;
+                    break;
+                case DROP_OLDEST:
+                    fired(OverflowPolicy.DROP_OLDEST);
+                    dropped = removeOldestEvent();
+                    enqueue(m, true);
+                    accepted = true;
+                    break;
+                case SPILL:
+                    if (spilledEvents < capacity) {
+                        fired(OverflowPolicy.SPILL);
+                        spill.addLast(m);
+                        spilledEvents++;
+                        return true;
+                    }
+                    accepted = awaitRoom(m, timed, nanos);
+                    break;
+                default:
+                    accepted = awaitRoom(m, timed, nanos);
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (dropped != null) {
+            onDrop.accept(dropped);
+        }
+        return accepted;
+    }
+
+    /**
+     * Waits until the queue (and the side buffer, if any) has room for another event
+     * and then inserts {@code m}. Called with the lock held.
+     */
+    private boolean awaitRoom(Message m, boolean timed, long nanos) throws InterruptedException {
+        fired(OverflowPolicy.BLOCK);
+        while (isFull()) {
+            if (timed) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            } else {
+                notFull.await();
+            }
+        }
+        if (policy == OverflowPolicy.SPILL && !spill.isEmpty()) {
+            spill.addLast(m);
+            spilledEvents++;
+        } else {
+            enqueue(m, true);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if one more event would trigger the overflow policy again. Called with the lock held.
+     */
+    private boolean isFull() {
+        if (policy == OverflowPolicy.SPILL) {
+            return queuedEvents >= capacity && spilledEvents >= capacity;
+        }
+        return queuedEvents >= capacity;
+    }
+
+    /**
+     * Appends an accepted message, behind the side buffer if it is in use. Called with the lock held.
+     */
+    private void enqueue(Message m, boolean isEvent) {
+        if (!spill.isEmpty()) {
+            spill.addLast(m); // Keeps the order with the events already spilled
+            if (isEvent) {
+                spilledEvents++;
+            }
+        } else {
+            queue.addLast(m);
+            if (isEvent) {
+                queuedEvents++;
+            }
+        }
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes the head of the queue and refills it from the side buffer. Called with the lock held.
+     *
+     * @return The head message, or null if the queue is empty.
+     */
+    private Message dequeue() {
+        Message m = queue.pollFirst();
+        if (m == null) {
+            return null;
+        }
+        if (m instanceof Event<?>) {
+            queuedEvents--;
+        }
+        // Moves the spilled messages back while there is room for their events
+        while (!spill.isEmpty() && (queuedEvents < capacity || !(spill.peekFirst() instanceof Event<?>))) {
+            Message moved = spill.pollFirst();
+            queue.addLast(moved);
+            if (moved instanceof Event<?>) {
+                spilledEvents--;
+                queuedEvents++;
+            }
+        }
+        notFull.signal();
+        return m;
+    }
+
+    /**
+     * Removes the oldest queued event, leaving broadcasts in place. Called with the lock held.
+     */
+    private Message removeOldestEvent() {
+        Iterator<Message> it = queue.iterator();
+        while (it.hasNext()) {
+            Message m = it.next();
+            if (m instanceof Event<?>) {
+                it.remove();
+                queuedEvents--;
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that the overflow policy fired. Called with the lock held.
+     */
+    private void fired(OverflowPolicy firedPolicy) {
+        overflows++;
+        overflowCounters.get(firedPolicy).increment();
+    }
+}
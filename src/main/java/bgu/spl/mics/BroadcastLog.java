@@ -0,0 +1,412 @@
+package bgu.spl.mics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A shared, append-only log of broadcast messages.
+ * <p>
+ * Publishing a broadcast appends a single entry, no matter how many microservices
+ * are subscribed to it. Every subscriber owns a {@link Reader} that walks the log
+ * at its own pace, skipping the broadcast types it is not interested in and the
+ * broadcasts of a type published before it subscribed to that type. Entries that
+ * every reader has passed are no longer referenced and are reclaimed by the garbage
+ * collector, so the log only holds the broadcasts the slowest reader has not consumed yet.
+ * <p>
+ * The log also counts the readers of every broadcast type and keeps the ones waiting
+ * for a message, so that a publisher only touches the readers it must wake up. While
+ * messages are counted in flight, a publisher counts the readers and links its entry
+ * without any reader subscribing or closing in between, so that a closing reader
+ * settles exactly the entries it was counted for.
+ * <p>
+ * Microservices that coalesce broadcasts always read them from the log; the log is
+ * enabled for every subscriber through the {@value #PROPERTY} system property.
+ */
+final class BroadcastLog {
+    /**
+     * The system property enabling the shared broadcast log.
+     */
+    static final String PROPERTY = "mics.broadcastLog";
+
+    /**
+     * A single published broadcast.
+     */
+    static final class Entry {
+        private long sequence; // Position of the entry in the log, fixed before the entry is published
+        private final Broadcast message;
+        private volatile Entry next;
+
+        private Entry(Broadcast message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * The readers subscribed to one broadcast type.
+     */
+    private static final class Subscribers {
+        private final AtomicInteger count = new AtomicInteger(); // Number of readers subscribed
+        private final Set<Reader> parked = ConcurrentHashMap.newKeySet(); // Subscribed readers waiting for a wake-up
+    }
+
+    /**
+     * The reading position of a single subscriber inside the log.
+     * Only the subscriber's own event loop moves the cursor.
+     */
+    static final class Reader {
+        private final BroadcastLog log; // The log this reader walks
+        private final Runnable wakeUp; // Wakes the subscriber up once a publisher claimed it
+        private final boolean coalescing; // Whether consecutive coalescible broadcasts are merged when taken
+        private volatile Entry cursor; // Last entry consumed by this reader
+        private final ConcurrentHashMap<Class<? extends Broadcast>, Long> types; // Delivered types, with the sequence they were subscribed at
+        private final AtomicBoolean parked; // Set while the subscriber waits on its message queue
+        private volatile Message held; // Message taken from the queue but newer than the next broadcast
+
+        private Reader(BroadcastLog log, Runnable wakeUp, boolean coalescing, Entry start) {
+            this.log = log;
+            this.wakeUp = wakeUp;
+            this.coalescing = coalescing;
+            this.cursor = start;
+            this.types = new ConcurrentHashMap<>();
+            this.parked = new AtomicBoolean(false);
+        }
+
+        /**
+         * @return true if the subscriber takes runs of consecutive {@link CoalescibleBroadcast}s
+         *         as a single merged broadcast.
+         */
+        boolean isCoalescing() {
+            return coalescing;
+        }
+
+        /**
+         * Adds a broadcast type to the types this reader delivers, from the next broadcast
+         * published on: the ones already numbered were not counted for this reader.
+         *
+         * @param type The broadcast type.
+         */
+        void subscribe(Class<? extends Broadcast> type) {
+            Lock exclusive = log.membership.writeLock();
+            exclusive.lock();
+            try {
+                if (types.putIfAbsent(type, log.getSequence()) == null) {
+                    Subscribers subscribers = log.subscribersOf(type);
+                    subscribers.count.incrementAndGet();
+                    if (parked.get()) {
+                        subscribers.parked.add(this);
+                    }
+                }
+            } finally {
+                exclusive.unlock();
+            }
+        }
+
+        /**
+         * Removes the reader from the counts and the waiting readers of its types, once
+         * its subscriber is unregistered. The reader delivers nothing afterwards.
+         *
+         * @return The number of broadcasts the reader was counted for and did not consume.
+         */
+        int close() {
+            Lock exclusive = log.membership.writeLock();
+            exclusive.lock();
+            try {
+                parked.set(false);
+                for (Class<? extends Broadcast> type : types.keySet()) {
+                    Subscribers subscribers = log.subscribersOf(type);
+                    subscribers.parked.remove(this);
+                    subscribers.count.decrementAndGet();
+                }
+                // No counted entry is between numbering and linking, the walk sees them all
+                int pending = pendingCount();
+                types.clear();
+                return pending;
+            } finally {
+                exclusive.unlock();
+            }
+        }
+
+        /**
+         * Returns the next broadcast this reader is subscribed to, without consuming it.
+         * Entries of other types are skipped for good.
+         *
+         * @return The next relevant broadcast, or null if there is none yet.
+         */
+        Broadcast peek() {
+            Entry next = cursor.next;
+            while (next != null && !delivers(next)) {
+                cursor = next;
+                next = next.next;
+            }
+            return next == null ? null : next.message;
+        }
+
+        /**
+         * Same as {@link #peek()}, but first waits until every broadcast numbered up to
+         * {@code sequence} is linked to the log. A publisher numbers its entry before
+         * linking it, so an entry may briefly be numbered and not visible yet.
+         *
+         * @param sequence A sequence number already given to a broadcast.
+         * @return The next relevant broadcast, or null if there is none yet.
+         */
+        Broadcast peek(long sequence) {
+            Broadcast next = peek();
+            while (next == null && cursor.sequence < sequence) {
+                Thread.yield(); // The publisher is between numbering and linking its entry
+                next = peek();
+            }
+            return next;
+        }
+
+        /**
+         * @return The sequence number of the broadcast returned by the latest {@link #peek()}.
+         */
+        long peekSequence() {
+            return cursor.next.sequence;
+        }
+
+        /**
+         * Checks for a broadcast this reader is subscribed to, without moving the cursor.
+         * Unlike {@link #peek()}, it may be called by other threads than the subscriber's.
+         *
+         * @return true if a relevant broadcast, or a held message, is waiting.
+         */
+        boolean hasPending() {
+            if (held != null) {
+                return true;
+            }
+            for (Entry next = cursor.next; next != null; next = next.next) {
+                if (delivers(next)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Counts the broadcasts this reader is subscribed to and did not consume yet,
+         * without moving the cursor.
+         *
+         * @return The number of relevant broadcasts waiting.
+         */
+        private int pendingCount() {
+            int pending = 0;
+            for (Entry next = cursor.next; next != null; next = next.next) {
+                if (delivers(next)) {
+                    pending++;
+                }
+            }
+            return pending;
+        }
+
+        /**
+         * @return true if the entry is of a type this reader subscribed to before it was published.
+         */
+        private boolean delivers(Entry entry) {
+            Long subscribedAt = types.get(entry.message.getClass());
+            return subscribedAt != null && entry.sequence > subscribedAt;
+        }
+
+        /**
+         * Consumes the broadcast returned by the latest {@link #peek()}.
+         */
+        void advance() {
+            cursor = cursor.next;
+        }
+
+        /**
+         * Keeps a message taken from the subscriber's queue until the older broadcasts
+         * before it are delivered.
+         *
+         * @param message The message to deliver next.
+         */
+        void hold(Message message) {
+            held = message;
+        }
+
+        /**
+         * Takes back the message kept by {@link #hold(Message)}.
+         *
+         * @return The held message, or null if there is none.
+         */
+        Message takeHeld() {
+            Message message = held;
+            held = null;
+            return message;
+        }
+
+        /**
+         * @return The sequence number of the last entry consumed by this reader.
+         */
+        long getSequence() {
+            return cursor.sequence;
+        }
+
+        /**
+         * Marks the subscriber as about to wait for a message, and adds it to the waiting
+         * readers of its types. The subscriber must check the log again after calling this method.
+         */
+        void park() {
+            if (!parked.getAndSet(true)) {
+                for (Class<? extends Broadcast> type : types.keySet()) {
+                    log.subscribersOf(type).parked.add(this);
+                }
+            }
+        }
+
+        /**
+         * Marks the subscriber as running again.
+         */
+        void unpark() {
+            if (parked.getAndSet(false)) {
+                leaveParked();
+            }
+        }
+
+        /**
+         * Clears the parked flag on behalf of a publisher.
+         *
+         * @return true if the subscriber was parked and must be woken up by the caller.
+         */
+        private boolean claimWakeUp() {
+            if (parked.get() && parked.compareAndSet(true, false)) {
+                leaveParked();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Removes the reader from the waiting readers of its types.
+         */
+        private void leaveParked() {
+            for (Class<? extends Broadcast> type : types.keySet()) {
+                log.subscribersOf(type).parked.remove(this);
+            }
+        }
+    }
+
+    private final AtomicReference<Entry> tail; // The latest published entry
+    private final ConcurrentHashMap<Class<? extends Broadcast>, Subscribers> subscribers; // Readers by broadcast type
+    private final ReentrantReadWriteLock membership; // Shared by counting publishers, exclusive to subscribe and close
+
+    /**
+     * Constructs an empty log.
+     */
+    BroadcastLog() {
+        Entry sentinel = new Entry(null);
+        sentinel.sequence = 0;
+        this.tail = new AtomicReference<>(sentinel);
+        this.subscribers = new ConcurrentHashMap<>();
+        this.membership = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Retrieves the readers of a broadcast type, creating their record if needed.
+     */
+    private Subscribers subscribersOf(Class<? extends Broadcast> type) {
+        return subscribers.computeIfAbsent(type, t -> new Subscribers());
+    }
+
+    /**
+     * Appends a broadcast to the log.
+     *
+     * @param b The broadcast to publish.
+     * @return The sequence number assigned to the broadcast.
+     */
+    long publish(Broadcast b) {
+        Entry entry = new Entry(b);
+        Entry last;
+        do {
+            last = tail.get();
+            entry.sequence = last.sequence + 1;
+        } while (!tail.compareAndSet(last, entry));
+        last.next = entry; // Makes the entry visible to the readers
+        return entry.sequence;
+    }
+
+    /**
+     * Appends a broadcast to the log if a reader is subscribed to its type, and counts it
+     * in flight once per reader before the readers can see it. While messages are counted,
+     * the readers are counted and the entry linked without any reader subscribing or
+     * closing in between; otherwise the publisher does not wait for anything.
+     *
+     * @param b        The broadcast to publish.
+     * @param inFlight The in-flight messages counter of the message bus.
+     * @return The number of readers the broadcast was published for, 0 if it was not appended.
+     */
+    int publish(Broadcast b, InFlightMessages inFlight) {
+        if (!inFlight.isEnabled()) {
+            int readers = readerCount(b.getClass());
+            if (readers > 0) {
+                publish(b);
+            }
+            return readers;
+        }
+        Lock shared = membership.readLock();
+        shared.lock();
+        try {
+            int readers = readerCount(b.getClass());
+            if (readers > 0) {
+                inFlight.sent(readers);
+                publish(b);
+            }
+            return readers;
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    /**
+     * Counts the readers subscribed to a broadcast type.
+     *
+     * @param type The broadcast type.
+     * @return The number of readers that will deliver a broadcast of this type.
+     */
+    int readerCount(Class<? extends Broadcast> type) {
+        Subscribers readers = subscribers.get(type);
+        return readers == null ? 0 : readers.count.get();
+    }
+
+    /**
+     * Wakes up the parked readers subscribed to a broadcast type, after a broadcast of
+     * this type was published. The readers that are not waiting are left alone: they
+     * check the log before waiting again.
+     *
+     * @param type The broadcast type.
+     */
+    void wakeUpParked(Class<? extends Broadcast> type) {
+        Subscribers readers = subscribers.get(type);
+        if (readers == null) {
+            return;
+        }
+        for (Reader reader : readers.parked) {
+            if (reader.claimWakeUp()) {
+                reader.wakeUp.run();
+            }
+        }
+    }
+
+    /**
+     * Creates a reader that will see every broadcast published from now on.
+     *
+     * @param wakeUp     Wakes the subscriber up when it is parked and a broadcast it reads is published.
+     * @param coalescing Whether the subscriber merges consecutive coalescible broadcasts.
+     * @return A new reader positioned at the end of the log.
+     */
+    Reader newReader(Runnable wakeUp, boolean coalescing) {
+        return new Reader(this, wakeUp, coalescing, tail.get());
+    }
+
+    /**
+     * @return The sequence number of the latest published broadcast.
+     */
+    long getSequence() {
+        return tail.get().sequence;
+    }
+}
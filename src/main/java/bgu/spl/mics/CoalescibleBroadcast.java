@@ -0,0 +1,18 @@
+package bgu.spl.mics;
+
+/**
+ * A {@link Broadcast} that can be merged with the next broadcast of the same kind
+ * when both are waiting in the broadcast log for a micro-service, so that a lagging micro-service
+ * handles them in a single callback (see {@link MicroService#setCoalescing(boolean)}).
+ */
+public interface CoalescibleBroadcast extends Broadcast {
+
+    /**
+     * Merges this broadcast with a broadcast that was published right after it.
+     *
+     * @param later The broadcast published right after this one.
+     * @return A broadcast standing for both, or null if they cannot be merged.
+     */
+    Broadcast coalesce(CoalescibleBroadcast later);
+
+}
@@ -1,27 +1,86 @@
 package bgu.spl.mics;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
  * Retrieving the result once it is available.
- * 
- * Only private methods may be added to this class.
+ * <p>
+ * Besides blocking on {@link #get()}, callers can register continuations
+ * ({@link #onComplete(Consumer)}, {@link #thenApply(Function)},
+ * {@link #completeOnTimeout(Object, long, TimeUnit)}) that run once the Future is
+ * resolved, without any thread waiting for it. Resolving is a single compare-and-set,
+ * so the first {@link #resolve(Object)} wins and the following ones are ignored.
+ *
+ * The public methods are the blocking API ({@link #get()}, {@link #get(long, TimeUnit)},
+ * {@link #resolve(Object)}, {@link #isDone()}) and the continuations above; any other
+ * method added to this class must not be public.
  * No public constructor is allowed except for the empty constructor.
  */
 public class Future<T> {
-	private boolean isResolved;
-	private Object lock;
-	private T result;
+	// The state of an unresolved Future is a stack of Continuation nodes (or null),
+	// the state of a resolved Future is its Resolved box
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Future, Object> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(Future.class, Object.class, "state");
+
+	// Holds the result of a resolved Future, so that a null result is told apart from no result
+	private static final class Resolved {
+		private final Object result;
+
+		private Resolved(Object result) {
+			this.result = result;
+		}
+	}
+
+	// A continuation waiting for the Future to be resolved: an action, or a thread to unpark
+	private static final class Continuation {
+		private final Consumer<Object> action; // Null for a waiting thread
+		private volatile Thread waiter; // The waiting thread, null once it stopped waiting
+		private volatile Continuation next; // The continuation registered before this one
+
+		private Continuation(Consumer<Object> action, Thread waiter) {
+			this.action = action;
+			this.waiter = waiter;
+		}
+
+		// Whether the continuation can be unlinked: a thread that stopped waiting
+		private boolean isCancelled() {
+			return action == null && waiter == null;
+		}
+	}
+
+	// Runs the timeout continuations, a single daemon thread shared by all the Futures
+	private static class TimeoutsHolder {
+		private static final ScheduledThreadPoolExecutor timeouts = newTimeouts();
+
+		private static ScheduledThreadPoolExecutor newTimeouts() {
+			ScheduledThreadPoolExecutor timeouts = new ScheduledThreadPoolExecutor(1, r -> {
+				Thread t = new Thread(r, "FutureTimeouts");
+				t.setDaemon(true);
+				return t;
+			});
+			timeouts.setRemoveOnCancelPolicy(true); // A Future resolved in time frees its timer right away
+			return timeouts;
+		}
+	}
+
+	private volatile Object state;
 
 	/**
 	 * This should be the only public constructor in this class.
 	 */
 	public Future() {
-		isResolved = false;
-		lock = new Object();
-		result = null;
+		state = null;
 	}
 
 	/**
@@ -29,45 +88,37 @@ public class Future<T> {
 	 * This is a blocking method! It waits for the computation in case it has
 	 * not been completed.
 	 * <p>
-	 * 
+	 *
 	 * @return return the result of type T if it is available, if not wait until it
 	 *         is available.
-	 * 
+	 *
 	 */
 	public T get() {
-		synchronized (lock) {
-			while (!isResolved) {
-				try {
-					lock.wait();
-				} catch (InterruptedException ie) {
-					System.out.println("Get Future linit time Interrupt: " + Thread.currentThread());
-					Thread.currentThread().interrupt();
-				}
-			}
-			return result;
-		}
+		return await(false, 0);
 	}
 
 	/**
 	 * Resolves the result of this Future object.
+	 * Only the first call has an effect: it wakes up the waiting threads and runs
+	 * the registered continuations, in registration order, on the calling thread.
 	 */
 	public void resolve(T result) {
-		synchronized (lock) {
-			if (!isResolved) {
-				this.result = result;
-				isResolved = true;
-				lock.notifyAll();
+		Resolved resolved = new Resolved(result);
+		Object current;
+		do {
+			current = state;
+			if (current instanceof Resolved) {
+				return;
 			}
-		}
+		} while (!STATE.compareAndSet(this, current, resolved));
+		runContinuations((Continuation) current, result);
 	}
 
 	/**
 	 * @return true if this object has been resolved, false otherwise
 	 */
 	public boolean isDone() {
-		synchronized (lock) {
-			return isResolved;
-		}
+		return state instanceof Resolved;
 	}
 
 	/**
@@ -75,7 +126,7 @@ public class Future<T> {
 	 * This method is non-blocking, it has a limited amount of time determined
 	 * by {@code timeout}
 	 * <p>
-	 * 
+	 *
 	 * @param timeout the maximal amount of time units to wait for the result.
 	 * @param unit   the {@link TimeUnit} time units to wait.
 	 * @return return the result of type T if it is available, if not,
@@ -83,26 +134,211 @@ public class Future<T> {
 	 *         elapsed, return null.
 	 */
 	public T get(long timeout, TimeUnit unit) {
-		synchronized(lock){
-			if (isResolved){
-				return result;
+		return await(true, unit.toNanos(timeout));
+	}
+
+	/**
+	 * Registers an action to run with the result once this Future is resolved.
+	 * The action runs on the thread resolving the Future, or right away on the
+	 * calling thread if the Future is already resolved. It must therefore be short
+	 * and must not block.
+	 *
+	 * @param action the action to run with the result.
+	 */
+	@SuppressWarnings("unchecked")
+	public void onComplete(Consumer<? super T> action) {
+		Continuation node = new Continuation(result -> action.accept((T) result), null);
+		Resolved resolved = push(node);
+		if (resolved != null) {
+			run(node, resolved.result);
+		}
+	}
+
+	/**
+	 * Returns a Future resolved with {@code fn} applied to the result of this Future.
+	 * If {@code fn} throws, the returned Future is resolved with null.
+	 *
+	 * @param <U> the type of the transformed result.
+	 * @param fn  the transformation, run the same way as an {@link #onComplete(Consumer)} action.
+	 * @return a new Future holding the transformed result.
+	 */
+	public <U> Future<U> thenApply(Function<? super T, ? extends U> fn) {
+		Future<U> transformed = new Future<>();
+		onComplete(result -> {
+			U value = null;
+			try {
+				value = fn.apply(result);
+			} finally {
+				transformed.resolve(value);
 			}
-			long time = unit.toMillis(timeout);
-			long remainingTime = time;
-			long endTime = System.currentTimeMillis() + remainingTime;
-			while (remainingTime > 0) {
-				if (isResolved) {
-					return result;
+		});
+		return transformed;
+	}
+
+	/**
+	 * Resolves this Future with {@code value} unless it is resolved within the given time.
+	 * No thread waits for the Future: a shared timer fires once the time has elapsed, and
+	 * is taken off the timer's queue as soon as the Future is resolved in time.
+	 *
+	 * @param value   the result to resolve with on timeout (typically null).
+	 * @param timeout the maximal amount of time units to wait for the result.
+	 * @param unit    the {@link TimeUnit} time units to wait.
+	 * @return this Future.
+	 */
+	public Future<T> completeOnTimeout(T value, long timeout, TimeUnit unit) {
+		if (!isDone()) {
+			ScheduledFuture<?> timer = TimeoutsHolder.timeouts.schedule(() -> resolve(value), timeout, unit);
+			onComplete(result -> timer.cancel(false)); // Removed from the queue when resolved in time
+		}
+		return this;
+	}
+
+	/**
+	 * Waits until this Future is resolved, or until the time is up for a timed wait.
+	 * An interrupt does not stop the wait; the interrupt status is kept for the caller.
+	 * A wait that times out takes its continuation off the stack, so that repeated
+	 * timed waits on a Future that is never resolved do not accumulate.
+	 *
+	 * @return the result, or null if the time is up.
+	 */
+	@SuppressWarnings("unchecked")
+	private T await(boolean timed, long nanos) {
+		Object current = state;
+		if (current instanceof Resolved) {
+			return (T) ((Resolved) current).result;
+		}
+		Thread waiter = Thread.currentThread();
+		Continuation node = new Continuation(null, waiter);
+		Resolved resolved = push(node);
+		if (resolved != null) {
+			return (T) resolved.result;
+		}
+		long deadline = System.nanoTime() + nanos;
+		boolean interrupted = false;
+		while (!((current = state) instanceof Resolved)) {
+			if (timed) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					break;
 				}
-				try {
-					lock.wait(remainingTime);
-				} catch (InterruptedException ie) {
-					System.out.println("Get Future limit time Interrupt: " + Thread.currentThread());
-					Thread.currentThread().interrupt(); 
+				LockSupport.parkNanos(this, remaining);
+			} else {
+				LockSupport.park(this);
+			}
+			if (Thread.interrupted()) {
+				if (!interrupted) {
+					System.out.println("Get Future Interrupt: " + waiter);
 				}
-				remainingTime = endTime - System.currentTimeMillis(); 
+				interrupted = true;
 			}
+		}
+		if (interrupted) {
+			waiter.interrupt();
+		}
+		if (!(current instanceof Resolved)) {
+			node.waiter = null;
+			removeCancelled();
 			return null;
+		}
+		return (T) ((Resolved) current).result;
+	}
+
+	/**
+	 * Pushes a continuation on the stack of an unresolved Future.
+	 *
+	 * @return null if pushed, or the Resolved box if the Future is already resolved.
+	 */
+	private Resolved push(Continuation node) {
+		Object current;
+		do {
+			current = state;
+			if (current instanceof Resolved) {
+				return (Resolved) current;
+			}
+			node.next = (Continuation) current;
+		} while (!STATE.compareAndSet(this, current, node));
+		return null;
 	}
+
+	/**
+	 * Unlinks the cancelled continuations from the stack of an unresolved Future.
+	 * Continuations are only pushed on top, so a node can be unlinked from its predecessor;
+	 * the traversal starts over when the top changes, or when the predecessor was cancelled too.
+	 */
+	private void removeCancelled() {
+		retry:
+		while (true) {
+			Object top = state;
+			if (!(top instanceof Continuation)) {
+				return; // Resolved, the stack is gone
+			}
+			Continuation pred = null;
+			for (Continuation c = (Continuation) top, next; c != null; c = next) {
+				next = c.next;
+				if (!c.isCancelled()) {
+					pred = c;
+				} else if (pred != null) {
+					pred.next = next;
+					if (pred.isCancelled()) {
+						continue retry;
+					}
+				} else if (!STATE.compareAndSet(this, c, next)) {
+					continue retry;
+				}
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Runs a stack of continuations in registration order. The links are left as they
+	 * are, since a timed-out waiter may still be unlinking a node.
+	 */
+	private static void runContinuations(Continuation top, Object result) {
+		List<Continuation> stack = new ArrayList<>();
+		for (Continuation c = top; c != null; c = c.next) {
+			stack.add(c);
+		}
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			run(stack.get(i), result);
+		}
+	}
+
+	/**
+	 * @return the number of continuations waiting for this Future (0 once resolved).
+	 */
+	int pendingContinuations() {
+		Object current = state;
+		int pending = 0;
+		for (Continuation c = current instanceof Continuation ? (Continuation) current : null; c != null; c = c.next) {
+			pending++;
+		}
+		return pending;
+	}
+
+	/**
+	 * @return the number of timeouts scheduled and not fired nor cancelled yet.
+	 */
+	static int pendingTimeouts() {
+		return TimeoutsHolder.timeouts.getQueue().size();
+	}
+
+	/**
+	 * Runs a single continuation: wakes up a waiting thread, or runs an action.
+	 * A failing action is reported and does not prevent the others from running.
+	 */
+	private static void run(Continuation c, Object result) {
+		if (c.action == null) {
+			Thread waiter = c.waiter;
+			if (waiter != null) {
+				LockSupport.unpark(waiter);
+			}
+			return;
+		}
+		try {
+			c.action.accept(result);
+		} catch (RuntimeException e) {
+			System.err.println("Future continuation failed: " + e);
+		}
 	}
 }
@@ -0,0 +1,91 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages delivered to microservices and not handled yet.
+ * <p>
+ * A message is counted when it is delivered to a queue (once per receiving
+ * microservice), and uncounted once its receiver has dispatched it, or when it is
+ * dropped. A callback sends its own messages before the message it handles is
+ * uncounted, so the count only reaches zero once every message, and every message
+ * sent because of it, has been handled: the system is quiescent.
+ * <p>
+ * Counting is off until {@link #enable()} is called, and must be enabled before
+ * any message is sent.
+ */
+final class InFlightMessages {
+    private volatile boolean enabled; // Whether messages are counted
+    private final AtomicLong count; // Messages delivered and not handled yet
+    private volatile Future<Boolean> idle; // Resolved once the count reaches zero, null if nobody waits
+
+    /**
+     * Constructs a disabled counter.
+     */
+    InFlightMessages() {
+        this.enabled = false;
+        this.count = new AtomicLong(0);
+        this.idle = null;
+    }
+
+    /**
+     * Starts counting.
+     */
+    void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return true if messages are counted.
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts messages about to be delivered.
+     *
+     * @param messages The number of deliveries.
+     */
+    void sent(int messages) {
+        if (enabled && messages > 0) {
+            count.addAndGet(messages);
+        }
+    }
+
+    /**
+     * Uncounts messages that were handled or dropped.
+     *
+     * @param messages The number of messages.
+     */
+    void done(int messages) {
+        if (enabled && messages > 0 && count.addAndGet(-messages) <= 0) {
+            Future<Boolean> waiting = idle;
+            if (waiting != null) {
+                waiting.resolve(true);
+            }
+        }
+    }
+
+    /**
+     * Waits until no message is in flight. Meant for a single waiting thread.
+     *
+     * @param timeout The maximal time to wait, or 0 to wait as long as needed.
+     * @param unit    The unit of {@code timeout}.
+     * @return true if the system is quiescent, false if the time is up.
+     */
+    boolean await(long timeout, TimeUnit unit) {
+        Future<Boolean> waiting = new Future<>();
+        idle = waiting; // Before checking the count, so that the last done() sees it
+        try {
+            if (count.get() <= 0) {
+                return true;
+            }
+            Boolean quiescent = timeout > 0 ? waiting.get(timeout, unit) : waiting.get();
+            return quiescent != null;
+        } finally {
+            idle = null;
+        }
+    }
+}
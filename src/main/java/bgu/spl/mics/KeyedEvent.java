@@ -0,0 +1,18 @@
+package bgu.spl.mics;
+
+/**
+ * An {@link Event} that names the key it belongs to, so that
+ * {@link RoutingStrategy#KEY_AFFINITY} sends every event with the same key to
+ * the same subscriber.
+ *
+ * @param <T> The type of the result expected for the event.
+ */
+public interface KeyedEvent<T> extends Event<T> {
+
+    /**
+     * @return The routing key of this event. Equal keys must have equal hash codes
+     *         in every run, e.g. strings or boxed numbers.
+     */
+    Object getRoutingKey();
+
+}
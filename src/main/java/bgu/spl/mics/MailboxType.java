@@ -0,0 +1,61 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The kinds of message queues the {@link MessageBusImpl} can allocate for its
+ * registered microservices.
+ * <p>
+ * The kind is chosen once, when the message-bus is constructed, through the
+ * {@value #PROPERTY} system property (e.g. {@code -Dmics.mailbox=MPSC}).
+ */
+public enum MailboxType {
+    /**
+     * A {@link LinkedBlockingQueue}, safe for any number of consumers.
+     */
+    LINKED {
+        @Override
+        BlockingQueue<Message> newMailbox() {
+            return new LinkedBlockingQueue<>();
+        }
+    },
+    /**
+     * A lock-free {@link MpscBlockingQueue}, relying on the microservice's own event loop
+     * being the only consumer of its queue.
+     */
+    MPSC {
+        @Override
+        BlockingQueue<Message> newMailbox() {
+            return new MpscBlockingQueue<>();
+        }
+    };
+
+    /**
+     * The system property used to select the mailbox kind.
+     */
+    public static final String PROPERTY = "mics.mailbox";
+
+    /**
+     * @return A new, empty message queue of this kind.
+     */
+    abstract BlockingQueue<Message> newMailbox();
+
+    /**
+     * Reads the mailbox kind from the {@value #PROPERTY} system property.
+     *
+     * @return The selected kind, or {@link #LINKED} if the property is missing or invalid.
+     */
+    public static MailboxType fromProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null) {
+            return LINKED;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown mailbox type '" + value + "', using " + LINKED);
+            return LINKED;
+        }
+    }
+}
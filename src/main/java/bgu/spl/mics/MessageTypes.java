@@ -0,0 +1,43 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every {@link Message} class a small integer id the first time it is seen.
+ * <p>
+ * The ids are dense (0, 1, 2, ...) and never reused, so they can index plain arrays:
+ * the callback table of a {@link MicroService} and the routing tables of the
+ * {@link MessageBusImpl}. Looking up an id goes through a {@link ClassValue}, which
+ * caches the id on the class itself, so delivering a message involves no hashing
+ * of its class.
+ */
+final class MessageTypes {
+    private static final AtomicInteger nextId = new AtomicInteger(0);
+    private static final ConcurrentHashMap<Class<?>, Integer> assigned = new ConcurrentHashMap<>(); // Only used on a class's first lookup
+    private static final ClassValue<Integer> ids = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            // Racing first lookups may both compute, the map makes them agree on a single id
+            return assigned.computeIfAbsent(type, t -> nextId.getAndIncrement());
+        }
+    };
+
+    private MessageTypes() {
+    }
+
+    /**
+     * @param type A message class.
+     * @return The id of {@code type}, assigned on the first call.
+     */
+    static int idOf(Class<?> type) {
+        return ids.get(type);
+    }
+
+    /**
+     * @return The number of ids assigned so far.
+     */
+    static int count() {
+        return nextId.get();
+    }
+}
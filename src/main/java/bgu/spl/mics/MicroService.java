@@ -1,7 +1,9 @@
 package bgu.spl.mics;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -18,15 +20,26 @@ import java.util.Map;
  * message-queue (see {@link MessageBus#register(bgu.spl.mics.MicroService)}
  * method). The abstract MicroService stores this callback together with the
  * type of the message is related to.
- * 
- * Only private fields and methods may be added to this class.
  * <p>
+ * Besides these wrappers, derived classes tune their event loop through protected
+ * setters ({@link #setBatchMode(boolean)}, {@link #setCoalescing(boolean)},
+ * {@link #setBacklog(int)}) and may wait for the bus to settle with
+ * {@link #awaitQuiescence(long, TimeUnit)}. The public getters ({@link #getBacklog()},
+ * {@link #getLastBatchSize()}) are read by the schedulers and the unit tests.
+ * Any other field or method added to this class must be private, or package-private
+ * when the message-bus or a scheduler of this package needs it.
  */
 
 public abstract class MicroService implements Runnable {
     private boolean terminated = false;
     private final String name;
-    private final Map<Class<? extends Message>, Callback<?>> messagesToCallbacks = new HashMap<Class<? extends Message>,Callback<?>>();
+    private Callback<?>[] messagesToCallbacks = new Callback<?>[8]; // Callbacks indexed by message type id
+    private boolean batchMode = false; // Whether the event loop drains its whole queue at once
+    private final List<Message> batch = new ArrayList<>(); // Reusable buffer for batch mode
+    private int lastBatchSize = 0; // Number of messages taken by the latest batch
+    private boolean coalescing = false; // Whether consecutive coalescible broadcasts are merged when taken
+    private volatile int backlog = 0; // Work accepted but not finished yet, besides the queued messages
+    private volatile ActorScheduler.Actor actor = null; // Set when the micro-service runs on an ActorScheduler
 
 
     /**
@@ -59,7 +72,7 @@ public abstract class MicroService implements Runnable {
      *                 queue.
      */
     protected final <T, E extends Event<T>> void subscribeEvent(Class<E> type, Callback<E> callback) {
-        messagesToCallbacks.put(type, callback);
+        putCallback(type, callback);
         MessageBusImpl.getInstance().subscribeEvent(type,this);
     }
 
@@ -84,7 +97,7 @@ public abstract class MicroService implements Runnable {
      *                 queue.
      */
     protected final <B extends Broadcast> void subscribeBroadcast(Class<B> type, Callback<B> callback) {
-        messagesToCallbacks.put(type, callback);
+        putCallback(type, callback);
         MessageBusImpl.getInstance().subscribeBroadcast(type, this);
     }
 
@@ -104,6 +117,18 @@ public abstract class MicroService implements Runnable {
         return MessageBusImpl.getInstance().sendEvent(e);
     }
 
+    /**
+     * Sends the event {@code e} using the message-bus without asking for its result:
+     * no {@link Future} is created for it. Intended for events whose result is never used.
+     * <p>
+     * @param e         The event to send
+     * @return  		true if the event was queued for a micro-service, false in case no
+     * 					micro-service has subscribed to {@code e.getClass()}.
+     */
+    protected final boolean sendEventNoReply(Event<?> e) {
+        return MessageBusImpl.getInstance().sendEventNoReply(e);
+    }
+
     /**
      * A Micro-Service calls this method in order to send the broadcast message {@code b} using the message-bus
      * to all the services subscribed to it.
@@ -114,6 +139,20 @@ public abstract class MicroService implements Runnable {
         MessageBusImpl.getInstance().sendBroadcast(b);
     }
 
+    /**
+     * Waits until every message sent so far, and every message sent because of it,
+     * has been handled by the micro-services receiving it. Intended for a micro-service
+     * driving the others (e.g. a clock that moves on once a tick was fully handled).
+     * <p>
+     * @param timeout The maximal time to wait, or 0 to wait as long as needed.
+     * @param unit    The unit of {@code timeout}.
+     * @return true if no message is in flight, false if the time is up.
+     * @throws IllegalStateException if quiescence tracking was not enabled on the message-bus.
+     */
+    protected final boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        return MessageBusImpl.getInstance().awaitQuiescence(timeout, unit);
+    }
+
     /**
      * Completes the received request {@code e} with the result {@code result}
      * using the message-bus.
@@ -133,6 +172,66 @@ public abstract class MicroService implements Runnable {
      */
     protected abstract void initialize();
 
+    /**
+     * Switches the event loop to batch mode: instead of taking one message per
+     * wait, it drains every message queued in the micro-service's queue and
+     * dispatches them in a row. Intended for services that receive bursts of
+     * messages. Must be called before the event loop starts (e.g. in the constructor).
+     * <p>
+     * @param batchMode true to drain the queue in batches, false to take one message at a time.
+     */
+    protected final void setBatchMode(boolean batchMode) {
+        this.batchMode = batchMode;
+    }
+
+    /**
+     * Switches the micro-service to coalescing mode: it reads its broadcasts from the
+     * message-bus's shared broadcast log, and a run of consecutive {@link CoalescibleBroadcast}s
+     * waiting there is merged into one when it is taken (e.g. a lagging sensor gets one
+     * TickBroadcast covering ticks {@code [from, to]} instead of one per tick), without
+     * queuing or dispatching the ticks one by one. Only broadcasts not separated by an
+     * older event are merged, so the order relative to the other messages is kept.
+     * Must be called before subscribing to broadcasts (e.g. in the constructor).
+     * <p>
+     * @param coalescing true to merge consecutive coalescible broadcasts, false to deliver each one.
+     */
+    protected final void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Reports how much work the micro-service has accepted but not finished yet
+     * (e.g. events it keeps aside until their processing time). The message-bus adds it
+     * to the micro-service's queue length when routing events by load.
+     * <p>
+     * @param backlog the number of pending work items.
+     */
+    protected final void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * @return true if the micro-service merges consecutive coalescible broadcasts.
+     */
+    final boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * @return the backlog last reported with {@link #setBacklog(int)}.
+     */
+    public final int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * @return the number of messages taken from the queue by the latest batch,
+     *         or 1 for each message when not in batch mode.
+     */
+    public final int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
     /**
      * Signals the event loop that it must terminate after handling the current
      * message.
@@ -156,14 +255,26 @@ public abstract class MicroService implements Runnable {
     @Override
     public final void run() {
         MessageBusImpl.getInstance().register(this); // Registration of Microservice to Message Bus 
-        initialize();
+        try {
+            initialize();
+        } finally {
+            MessageBusImpl.getInstance().initialized(); // Its subscriptions are in place
+        }
         while (!terminated) {
             try{
-                Message msg = MessageBusImpl.getInstance().awaitMessage(this);
-                @SuppressWarnings("unchecked")
-                Callback<Message> cb = (Callback<Message>)messagesToCallbacks.get(msg.getClass());
-                if (cb != null)
-                    cb.call(msg);
+                if (batchMode) {
+                    lastBatchSize = MessageBusImpl.getInstance().awaitMessages(this, batch);
+                    dispatchBatch();
+                }
+                else {
+                    Message msg = MessageBusImpl.getInstance().awaitMessage(this);
+                    lastBatchSize = 1;
+                    try {
+                        dispatch(msg);
+                    } finally {
+                        MessageBusImpl.getInstance().handled();
+                    }
+                }
             }
             // In case microservice interrupted while waiting for a message
             catch(InterruptedException ie){
@@ -179,4 +290,109 @@ public abstract class MicroService implements Runnable {
         }
         MessageBusImpl.getInstance().unregister(this);
     }
+
+    /**
+     * Binds the micro-service to the actor running it instead of a thread of its own.
+     */
+    final void attachActor(ActorScheduler.Actor actor) {
+        this.actor = actor;
+    }
+
+    /**
+     * @return the actor running the micro-service, or null if it has a thread of its own.
+     */
+    final ActorScheduler.Actor actor() {
+        return actor;
+    }
+
+    /**
+     * The first slice of a micro-service running as an actor: the same registration
+     * and initialization as {@link #run()}, without the event loop.
+     *
+     * @return true if the micro-service terminated (and was unregistered).
+     */
+    final boolean startActor() {
+        MessageBusImpl.getInstance().register(this);
+        try {
+            initialize();
+        } finally {
+            MessageBusImpl.getInstance().initialized();
+        }
+        if (terminated) {
+            MessageBusImpl.getInstance().unregister(this);
+        }
+        return terminated;
+    }
+
+    /**
+     * One slice of a micro-service running as an actor: handles up to {@code max}
+     * waiting messages, the same way a batch of the event loop is handled, without
+     * ever waiting for messages.
+     *
+     * @return true if the micro-service terminated (and was unregistered).
+     */
+    final boolean runActorSlice(int max) {
+        try {
+            lastBatchSize = MessageBusImpl.getInstance().pollMessages(this, batch, max);
+            dispatchBatch();
+        }
+        // In case threat is unregistered
+        catch (IllegalStateException ils) {
+            System.err.println("MicroService " + name + " is not registered with the MessageBus");
+            terminate();
+        }
+        if (terminated) {
+            MessageBusImpl.getInstance().unregister(this);
+        }
+        return terminated;
+    }
+
+    /**
+     * Stores the callback of a message type at the type's id, growing the table if needed.
+     */
+    private void putCallback(Class<? extends Message> type, Callback<?> callback) {
+        int id = MessageTypes.idOf(type);
+        if (id >= messagesToCallbacks.length) {
+            messagesToCallbacks = Arrays.copyOf(messagesToCallbacks, Math.max(id + 1, messagesToCallbacks.length * 2));
+        }
+        messagesToCallbacks[id] = callback;
+    }
+
+    /**
+     * Calls the callback subscribed for the type of {@code msg}, if there is one.
+     */
+    private void dispatch(Message msg) {
+        int id = MessageTypes.idOf(msg.getClass());
+        if (id < messagesToCallbacks.length) {
+            @SuppressWarnings("unchecked")
+            Callback<Message> cb = (Callback<Message>) messagesToCallbacks[id];
+            if (cb != null)
+                cb.call(msg);
+        }
+    }
+
+    /**
+     * Dispatches the drained batch in order. If a callback terminates the
+     * micro-service, the events left in the batch are completed with null, the same
+     * way unregistering resolves the events still waiting in the queue.
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatchBatch() {
+        try {
+            for (Message msg : batch) {
+                try {
+                    if (!terminated) {
+                        dispatch(msg);
+                    }
+                    else if (msg instanceof Event<?>) {
+                        complete((Event<Object>) msg, null);
+                    }
+                } finally {
+                    MessageBusImpl.getInstance().handled();
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
 }
@@ -0,0 +1,258 @@
+package bgu.spl.mics;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A multi-producer, single-consumer blocking queue used as a microservice mailbox.
+ * <p>
+ * Producers link new nodes with a single atomic swap of the tail, so sending never
+ * takes a lock. Exactly one thread (the owning microservice's event loop) may take
+ * elements out of the queue; it spins briefly when the queue is empty and only then
+ * parks until a producer wakes it up.
+ * <p>
+ * Read-only operations ({@link #size()}, {@link #contains(Object)}, iteration) may be
+ * called from any thread and are weakly consistent. Removing operations
+ * ({@link #poll()}, {@link #take()}, {@link #drainTo(Collection)}, {@link #clear()})
+ * must only be called by the single consumer, or while the consumer is not running.
+ *
+ * @param <E> The type of elements held in this queue.
+ */
+public class MpscBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private static final int SPIN_TRIES = 128; // Empty polls before the consumer parks
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscBlockingQueue, Node> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(MpscBlockingQueue.class, Node.class, "tail");
+
+    private static final class Node<E> {
+        private E item;
+        private volatile Node<E> next;
+
+        private Node(E item) {
+            this.item = item;
+        }
+    }
+
+    private volatile Node<E> head; // Stub node owned by the consumer, its successor is the first element
+    private volatile Node<E> tail; // Last linked node, swapped by producers
+    private final AtomicInteger count; // Number of elements currently in the queue
+    private volatile Thread waiter; // The consumer while it is parked, null otherwise
+
+    /**
+     * Constructs an empty queue.
+     */
+    public MpscBlockingQueue() {
+        Node<E> stub = new Node<>(null);
+        this.head = stub;
+        this.tail = stub;
+        this.count = new AtomicInteger(0);
+        this.waiter = null;
+    }
+
+    /**
+     * Inserts the element at the tail of the queue. Never blocks and never fails.
+     *
+     * @param e The element to add.
+     * @return true
+     * @throws NullPointerException if {@code e} is null.
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        Node<E> node = new Node<>(e);
+        count.incrementAndGet();
+        @SuppressWarnings("unchecked")
+        Node<E> prev = TAIL.getAndSet(this, node);
+        prev.next = node; // Makes the node visible to the consumer
+        // Reading the waiter after linking guarantees the consumer is either woken or sees the node
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue. Consumer only.
+     *
+     * @return The head of the queue, or null if it is empty.
+     */
+    @Override
+    public E poll() {
+        Node<E> h = head;
+        Node<E> next = h.next;
+        if (next == null) {
+            return null;
+        }
+        E item = next.item;
+        next.item = null; // The node becomes the new stub
+        head = next;
+        count.decrementAndGet();
+        return item;
+    }
+
+    @Override
+    public E peek() {
+        Node<E> next = head.next;
+        return next == null ? null : next.item;
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, spinning and then parking until an
+     * element becomes available. Consumer only.
+     *
+     * @return The head of the queue.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public E take() throws InterruptedException {
+        E e = spinPoll();
+        if (e != null) {
+            return e;
+        }
+        waiter = Thread.currentThread();
+        try {
+            while ((e = poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+            return e;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Retrieves and removes the head of the queue, waiting up to the given time for an
+     * element to become available. Consumer only.
+     *
+     * @param timeout How long to wait before giving up.
+     * @param unit    The {@link TimeUnit} of {@code timeout}.
+     * @return The head of the queue, or null if the time elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = spinPoll();
+        if (e != null) {
+            return e;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiter = Thread.currentThread();
+        try {
+            while ((e = poll()) == null) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return e;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = poll()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, count.get());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Returns a weakly consistent, read-only iterator over the queued elements.
+     *
+     * @return An iterator over the elements in FIFO order.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Node<E> current = head.next;
+
+            @Override
+            public boolean hasNext() {
+                // Skip nodes the consumer has already taken
+                while (current != null && current.item == null) {
+                    current = current.next;
+                }
+                return current != null;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                E item = current.item;
+                current = current.next;
+                return item;
+            }
+        };
+    }
+
+    /**
+     * Polls the queue a bounded number of times before the caller commits to parking.
+     */
+    private E spinPoll() {
+        E e;
+        for (int i = 0; i < SPIN_TRIES; i++) {
+            if ((e = poll()) != null) {
+                return e;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package bgu.spl.mics;
+
+/**
+ * What a bounded microservice queue does with an incoming {@link Event} when it is full.
+ * Broadcasts are control messages (ticks, terminations, crashes) and are never
+ * rejected, blocked or dropped, whatever the policy.
+ *
+ * @see BoundedMailbox
+ */
+public enum OverflowPolicy {
+    /**
+     * The sender waits until the receiving microservice takes a message.
+     */
+    BLOCK,
+    /**
+     * The oldest queued event is dropped to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The new event is dropped.
+     */
+    DROP_NEWEST,
+    /**
+     * The new event is kept in a side buffer of the same capacity and moved into the
+     * queue as room frees up. The sender only waits once the side buffer is full too.
+     */
+    SPILL
+}
@@ -0,0 +1,368 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Holds the microservices subscribed to a single event type and hands them out
+ * according to the group's {@link RoutingStrategy}, round-robin by default.
+ * <p>
+ * The subscribers are kept in an immutable snapshot array that is replaced
+ * (copy-on-write) whenever a microservice subscribes or unregisters, and the
+ * rotation is driven by an atomic cursor. Picking the next subscriber is
+ * therefore wait-free and does not allocate, while the rare membership changes
+ * are serialized on a lock (a {@link ReentrantLock} rather than a monitor, so that a
+ * virtual thread waiting for it does not pin its carrier thread).
+ */
+public final class RoundRobinSubscribers {
+    private static final MicroService[] EMPTY = new MicroService[0];
+    private static final int POINTS_PER_MEMBER = 64; // Virtual nodes per subscriber on the hash ring
+
+    /**
+     * An immutable consistent hash ring over the subscribers.
+     * Every subscriber owns {@link #POINTS_PER_MEMBER} points, derived from its name and
+     * fixed when it subscribes, so its points do not move when other subscribers join or
+     * leave, and the same subscribers get the same keys in every run.
+     */
+    static final class Ring {
+        private final int[] points; // Sorted hashes of the virtual nodes
+        private final MicroService[] owners; // The subscriber of each point
+
+        private Ring(MicroService[] members, Map<MicroService, Integer> seeds) {
+            long[] packed = new long[members.length * POINTS_PER_MEMBER]; // Point hash and member index
+            int p = 0;
+            for (int m = 0; m < members.length; m++) {
+                int base = seeds.get(members[m]);
+                for (int v = 0; v < POINTS_PER_MEMBER; v++) {
+                    packed[p++] = ((long) mix(base * 1031 + v) << 32) | m;
+                }
+            }
+            Arrays.sort(packed);
+            this.points = new int[packed.length];
+            this.owners = new MicroService[packed.length];
+            for (int i = 0; i < packed.length; i++) {
+                points[i] = (int) (packed[i] >> 32);
+                owners[i] = members[(int) packed[i]];
+            }
+        }
+
+        /**
+         * @param keyHash The hash code of a routing key.
+         * @return The subscriber owning the key: the one at the first point clockwise from it,
+         *         or null if the ring is empty.
+         */
+        MicroService owner(int keyHash) {
+            if (points.length == 0) {
+                return null;
+            }
+            int i = Arrays.binarySearch(points, mix(keyHash));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return owners[i == points.length ? 0 : i];
+        }
+
+        /**
+         * Spreads a hash code over the whole int range (the MurmurHash3 finalizer).
+         */
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+
+    private volatile MicroService[] snapshot; // Current subscribers, never modified in place
+    private final AtomicInteger cursor; // Round-robin position inside the snapshot (or the weighted schedule)
+    private final ToIntFunction<MicroService> weights; // Weight of a subscriber for WEIGHTED_ROUND_ROBIN
+    private volatile MicroService[] weightedSchedule; // One interleaved weighted cycle, never modified in place
+    private volatile RoutingStrategy strategy; // How the next subscriber is picked
+    private volatile Ring ring; // Consistent hash ring for KEY_AFFINITY, built on first use
+    private final Map<MicroService, Integer> ringSeeds; // Where each subscriber's ring points derive from
+    private final ReentrantLock lock; // Serializes membership changes and the ring build
+
+    /**
+     * Constructs an empty round-robin subscriber group.
+     */
+    RoundRobinSubscribers() {
+        this(ms -> 1);
+    }
+
+    /**
+     * Constructs an empty round-robin subscriber group.
+     *
+     * @param weights The weight of a subscriber, used by {@link RoutingStrategy#WEIGHTED_ROUND_ROBIN}.
+     */
+    RoundRobinSubscribers(ToIntFunction<MicroService> weights) {
+        this.snapshot = EMPTY;
+        this.cursor = new AtomicInteger(0);
+        this.weights = weights;
+        this.weightedSchedule = EMPTY;
+        this.strategy = RoutingStrategy.ROUND_ROBIN;
+        this.ringSeeds = new IdentityHashMap<>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Picks the subscriber that should receive the next event, in round-robin order.
+     *
+     * @return The next subscriber, or null if there are none.
+     */
+    MicroService next() {
+        return next(ms -> 0);
+    }
+
+    /**
+     * Picks the subscriber that should receive the next event, using the group's strategy.
+     *
+     * @param load The current load of a subscriber.
+     * @return The chosen subscriber, or null if there are none.
+     */
+    MicroService next(ToIntFunction<MicroService> load) {
+        return next(null, load);
+    }
+
+    /**
+     * Picks the subscriber that should receive an event, using the group's strategy.
+     * The subscribers are read once, so a concurrent unregister cannot empty them mid-pick.
+     *
+     * @param e    The event to route.
+     * @param load The current load of a subscriber.
+     * @return The chosen subscriber, or null if there are none.
+     */
+    MicroService next(Event<?> e, ToIntFunction<MicroService> load) {
+        MicroService[] members = snapshot;
+        if (members.length == 0) {
+            return null;
+        }
+        return strategy.pick(this, members, e, load);
+    }
+
+    /**
+     * @return The routing strategy of this group.
+     */
+    public RoutingStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @param strategy The routing strategy to use from now on.
+     */
+    void setStrategy(RoutingStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Advances the rotation.
+     *
+     * @param length The length of the array the index is used for, at least 1.
+     * @return The next index in round-robin order.
+     */
+    int nextIndex(int length) {
+        // Masking the sign bit keeps the index valid once the cursor overflows
+        return (cursor.getAndIncrement() & Integer.MAX_VALUE) % length;
+    }
+
+    /**
+     * @param members The subscribers read by the caller, used while the cycle is being built.
+     * @return One cycle of the weighted round robin. The returned array must not be modified.
+     */
+    MicroService[] weightedSchedule(MicroService[] members) {
+        MicroService[] schedule = weightedSchedule;
+        return schedule.length != 0 ? schedule : members; // A subscriber may be mid-publish
+    }
+
+    /**
+     * @return The consistent hash ring of the current subscribers.
+     */
+    Ring ring() {
+        Ring current = ring;
+        if (current == null) {
+            lock.lock();
+            try {
+                current = ring;
+                if (current == null) {
+                    current = new Ring(snapshot, ringSeeds);
+                    ring = current;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Rebuilds the weighted cycle after the subscribers' weights changed.
+     */
+    void reweigh() {
+        lock.lock();
+        try {
+            weightedSchedule = buildSchedule(snapshot);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a subscriber to the end of the rotation, if it is not already there.
+     *
+     * @param m The microservice to add.
+     * @return true if the microservice was added, false if it was already subscribed.
+     */
+    boolean add(MicroService m) {
+        lock.lock();
+        try {
+            if (contains(m)) {
+                return false;
+            }
+            MicroService[] rotated = rotate(snapshot, 1);
+            rotated[rotated.length - 1] = m;
+            ringSeeds.put(m, ringSeed(m));
+            publish(rotated);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a subscriber from the rotation.
+     *
+     * @param m The microservice to remove.
+     * @return true if the microservice was subscribed, false otherwise.
+     */
+    boolean remove(MicroService m) {
+        lock.lock();
+        try {
+            if (!contains(m)) {
+                return false;
+            }
+            MicroService[] rotated = rotate(snapshot, 0);
+            MicroService[] without = new MicroService[rotated.length - 1];
+            int i = 0;
+            for (MicroService ms : rotated) {
+                if (ms != m) {
+                    without[i++] = ms;
+                }
+            }
+            ringSeeds.remove(m);
+            publish(without);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param m The microservice to look for.
+     * @return true if {@code m} is currently subscribed.
+     */
+    public boolean contains(Object m) {
+        for (MicroService ms : snapshot) {
+            if (ms == m) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of current subscribers.
+     */
+    public int size() {
+        return snapshot.length;
+    }
+
+    /**
+     * @return The current subscribers snapshot. The returned array must not be modified.
+     */
+    MicroService[] snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Copies the snapshot so that the subscriber whose turn is next comes first,
+     * leaving {@code extra} empty slots at the end.
+     * This keeps the rotation order intact across membership changes, the same way
+     * a queue that is polled and re-appended would.
+     */
+    private MicroService[] rotate(MicroService[] current, int extra) {
+        MicroService[] rotated = new MicroService[current.length + extra];
+        int start = current.length == 0 ? 0 : (cursor.get() & Integer.MAX_VALUE) % current.length;
+        for (int i = 0; i < current.length; i++) {
+            rotated[i] = current[(start + i) % current.length];
+        }
+        return rotated;
+    }
+
+    /**
+     * Publishes a new snapshot and restarts the rotation at its first element.
+     */
+    private void publish(MicroService[] next) {
+        weightedSchedule = buildSchedule(next);
+        snapshot = next;
+        ring = null; // Rebuilt from the new snapshot on next use, under this group's lock
+        cursor.set(0);
+    }
+
+    /**
+     * Derives the ring seed of a joining subscriber from its name. Subscribers sharing
+     * a name are told apart by the lowest occurrence number not taken by another of them.
+     */
+    private int ringSeed(MicroService m) {
+        int base = m.getName().hashCode() * 31;
+        int occurrence = 1;
+        while (seedTaken(base + occurrence)) {
+            occurrence++;
+        }
+        return base + occurrence;
+    }
+
+    /**
+     * @return true if a current subscriber has the given ring seed. The seeds are compared
+     *         by value, which IdentityHashMap.containsValue does not do.
+     */
+    private boolean seedTaken(int seed) {
+        for (int taken : ringSeeds.values()) {
+            if (taken == seed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds one cycle of a smooth weighted round robin: each subscriber appears as
+     * many times as its weight, spread across the cycle.
+     */
+    private MicroService[] buildSchedule(MicroService[] members) {
+        int[] weight = new int[members.length];
+        int total = 0;
+        for (int i = 0; i < members.length; i++) {
+            weight[i] = Math.max(1, weights.applyAsInt(members[i]));
+            total += weight[i];
+        }
+        MicroService[] schedule = new MicroService[total];
+        int[] current = new int[members.length];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int i = 0; i < members.length; i++) {
+                current[i] += weight[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[slot] = members[best];
+        }
+        return schedule;
+    }
+}
@@ -0,0 +1,118 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
+
+/**
+ * The ways the {@link MessageBusImpl} can pick the subscriber that receives an
+ * {@link Event}. The strategy is chosen per event type (see
+ * {@link MessageBusImpl#setRoutingStrategy(Class, RoutingStrategy)}).
+ * <p>
+ * The load of a subscriber is the number of messages waiting in its queue plus the
+ * backlog it reports itself (see {@link MicroService#getBacklog()}).
+ */
+public enum RoutingStrategy {
+    /**
+     * Every subscriber in turn.
+     */
+    ROUND_ROBIN {
+        @Override
+        MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load) {
+            if (members.length == 0) {
+                return null;
+            }
+            return members[group.nextIndex(members.length)];
+        }
+    },
+    /**
+     * The subscriber with the lowest load. Ties go to the subscriber whose
+     * round-robin turn comes first, so idle subscribers share the events.
+     */
+    LEAST_QUEUE_DEPTH {
+        @Override
+        MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load) {
+            if (members.length == 0) {
+                return null;
+            }
+            int start = group.nextIndex(members.length);
+            MicroService best = members[start];
+            int bestLoad = load.applyAsInt(best);
+            for (int i = 1; i < members.length && bestLoad > 0; i++) {
+                MicroService candidate = members[(start + i) % members.length];
+                int candidateLoad = load.applyAsInt(candidate);
+                if (candidateLoad < bestLoad) {
+                    best = candidate;
+                    bestLoad = candidateLoad;
+                }
+            }
+            return best;
+        }
+    },
+    /**
+     * The less loaded of two subscribers picked at random. Nearly as balanced as
+     * {@link #LEAST_QUEUE_DEPTH} while looking at two queues only.
+     */
+    POWER_OF_TWO_CHOICES {
+        @Override
+        MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load) {
+            if (members.length <= 1) {
+                return members.length == 0 ? null : members[0];
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(members.length);
+            int second = random.nextInt(members.length - 1);
+            if (second >= first) {
+                second++; // Two distinct subscribers
+            }
+            MicroService a = members[first];
+            MicroService b = members[second];
+            return load.applyAsInt(b) < load.applyAsInt(a) ? b : a;
+        }
+    },
+    /**
+     * Every subscriber in turn, as many times per cycle as its weight (see
+     * {@link MessageBusImpl#setRoutingWeight(String, int)}), interleaved so that
+     * a heavy subscriber does not get its events in a single burst.
+     */
+    WEIGHTED_ROUND_ROBIN {
+        @Override
+        MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load) {
+            MicroService[] schedule = group.weightedSchedule(members);
+            if (schedule.length == 0) {
+                return null;
+            }
+            return schedule[group.nextIndex(schedule.length)];
+        }
+    },
+    /**
+     * The subscriber owning the event's key (see {@link KeyedEvent}) on a consistent
+     * hash ring, so the events sharing a key keep going to the same subscriber.
+     * When a subscriber leaves, only the keys it owned move to other subscribers; when
+     * one joins, it only takes keys over from the others. Events without a key are
+     * routed round robin.
+     */
+    KEY_AFFINITY {
+        @Override
+        MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load) {
+            if (e instanceof KeyedEvent<?>) {
+                Object key = ((KeyedEvent<?>) e).getRoutingKey();
+                MicroService owner = key != null ? group.ring().owner(key.hashCode()) : null;
+                if (owner != null) {
+                    return owner;
+                }
+            }
+            return ROUND_ROBIN.pick(group, members, e, load);
+        }
+    };
+
+    /**
+     * Picks the subscriber that receives the next event.
+     *
+     * @param group   The subscribers of the event type.
+     * @param members The subscribers, read once by the caller. The array must not be modified.
+     * @param e       The event to route, or null if unknown.
+     * @param load    The current load of a subscriber.
+     * @return The chosen subscriber, or null if there are none.
+     */
+    abstract MicroService pick(RoundRobinSubscribers group, MicroService[] members, Event<?> e, ToIntFunction<MicroService> load);
+}
@@ -0,0 +1,80 @@
+package bgu.spl.mics;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads microservices run on: platform threads by default, or virtual
+ * threads when the {@value #PROPERTY} system property is set to {@code true} and the
+ * JVM supports them (Java 21 or later, see the {@code java21} build profile).
+ * <p>
+ * A microservice spends most of its life waiting for messages, so on virtual threads
+ * thousands of sensor services share a handful of carrier threads. The message bus and
+ * the shared objects wait with {@link java.util.concurrent.locks.LockSupport} and
+ * {@link java.util.concurrent.locks.ReentrantLock} rather than monitors, so a waiting
+ * virtual thread releases its carrier thread.
+ * <p>
+ * Virtual threads are always daemon threads: whoever starts them must wait for them
+ * (e.g. with {@link Thread#join()}) to keep the JVM alive.
+ */
+public final class ServiceThreads {
+    /**
+     * The system property enabling virtual threads.
+     */
+    public static final String PROPERTY = "mics.virtualThreads";
+
+    // Looks the Java 21 API up once, the sources being compiled for Java 8
+    private static class VirtualThreadsHolder {
+        private static final Method ofVirtual = lookUp("java.lang.Thread", "ofVirtual");
+        private static final Method name = lookUp("java.lang.Thread$Builder", "name", String.class);
+        private static final Method unstarted = lookUp("java.lang.Thread$Builder", "unstarted", Runnable.class);
+        private static final boolean enabled = requested();
+
+        private static Method lookUp(String className, String methodName, Class<?>... parameterTypes) {
+            try {
+                return Class.forName(className).getMethod(methodName, parameterTypes);
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        private static boolean requested() {
+            if (!Boolean.getBoolean(PROPERTY)) {
+                return false;
+            }
+            if (ofVirtual == null || name == null || unstarted == null) {
+                System.err.println("Virtual threads require Java 21, using platform threads");
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private ServiceThreads() {
+    }
+
+    /**
+     * @return true if {@link #newThread(Runnable, String)} creates virtual threads.
+     */
+    public static boolean isVirtual() {
+        return VirtualThreadsHolder.enabled;
+    }
+
+    /**
+     * Creates an unstarted thread for a microservice (or any other task).
+     *
+     * @param task The task the thread runs.
+     * @param name The name of the thread.
+     * @return A virtual thread if enabled, a platform thread otherwise.
+     */
+    public static Thread newThread(Runnable task, String name) {
+        if (VirtualThreadsHolder.enabled) {
+            try {
+                Object builder = VirtualThreadsHolder.name.invoke(VirtualThreadsHolder.ofVirtual.invoke(null), name);
+                return (Thread) VirtualThreadsHolder.unstarted.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Failed to create a virtual thread, using a platform thread: " + e);
+            }
+        }
+        return new Thread(task, name);
+    }
+}
@@ -0,0 +1,53 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A table of values indexed by message type id (see {@link MessageTypes}).
+ * Reads are a plain array access and never lock; writes are rare (they happen when
+ * microservices subscribe) and copy the array when it has to grow.
+ *
+ * @param <V> The type of the values.
+ */
+final class TypeTable<V> {
+    private volatile Object[] slots; // Values indexed by type id, replaced when growing
+    private final ReentrantLock writeLock = new ReentrantLock(); // Serializes writers without pinning virtual threads
+
+    /**
+     * Constructs an empty table.
+     */
+    TypeTable() {
+        this.slots = new Object[Math.max(8, MessageTypes.count())];
+    }
+
+    /**
+     * @param id A message type id.
+     * @return The value stored for {@code id}, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int id) {
+        Object[] current = slots;
+        return id < current.length ? (V) current[id] : null;
+    }
+
+    /**
+     * Stores the value for a message type id.
+     *
+     * @param id    A message type id.
+     * @param value The value to store.
+     */
+    void put(int id, V value) {
+        writeLock.lock();
+        try {
+            Object[] current = slots;
+            if (id >= current.length) {
+                current = Arrays.copyOf(current, Math.max(id + 1, current.length * 2));
+            }
+            current[id] = value;
+            slots = current; // Publishes the value to readers
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
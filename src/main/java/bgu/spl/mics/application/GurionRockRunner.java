@@ -9,10 +9,16 @@ import java.lang.reflect.Type;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceThreads;
 import bgu.spl.mics.application.objects.*;
 import bgu.spl.mics.application.services.*;
 
@@ -24,7 +30,8 @@ import bgu.spl.mics.application.services.*;
  * </p>
  */
 public class GurionRockRunner {
-
+    // System property reporting the tick timings of a real-time run on stderr, when "true"
+    public static final String TICK_TIMINGS_PROPERTY = "gurion.tickTimings";
 
     /**
      * The main method of the simulation.
@@ -56,30 +63,53 @@ public class GurionRockRunner {
             PoseService poseService = initializePoseService(config, gson, camerasServices.size(), liDarServices.size(),configFileDir);
             FusionSlam.getInstance().setMicroserviceCount(camerasServices.size() + 1 + liDarServices.size());
             FusionSlam.getInstance().setOutputFilePath(configFileDir.toString());
-
-            // Start microServices in separate threads
-            List<Thread> microServices = new LinkedList<>();
-            for (CameraService cameraService : camerasServices) {
-                microServices.add(new Thread(cameraService, "Camera"));
-            }
-            for (LiDarService lidarService : liDarServices) {
-                microServices.add(new Thread(lidarService, "LiDar"));
+            configureMailboxes(config);
+            configureRouting(config);
+            if (config.getTimeMode() != TimeMode.REAL_TIME) {
+                MessageBusImpl.getInstance().enableQuiescenceTracking(); // Before any message is sent
             }
+
+            // Start microServices in separate threads, or as actors on a shared pool if enabled
+            List<MicroService> microServices = new LinkedList<>();
+            microServices.addAll(camerasServices);
+            microServices.addAll(liDarServices);
             if (poseService != null) {
-                microServices.add(new Thread(poseService, "Pose"));
+                microServices.add(poseService);
+            }
+            microServices.add(FusionSlamService);
+            MessageBusImpl.getInstance().expectMicroServices(microServices.size());
+            ActorScheduler actors = ActorScheduler.fromProperty();
+            List<Thread> threads = new LinkedList<>();
+            for (MicroService microService : microServices) {
+                if (actors != null) {
+                    actors.start(microService);
+                } else {
+                    Thread thread = ServiceThreads.newThread(microService, threadName(microService));
+                    threads.add(thread);
+                    thread.start();
+                }
             }
-            microServices.add(new Thread(FusionSlamService, "FusionSlam"));
-            for (Thread microService : microServices) {
-                microService.start();
+            if (actors != null) {
+                actors.close();
             }
 
             // need to create time service after all threads are running
-            Thread timeServiceThread = new Thread(new TimeService(config.getTickTime(), config.getDuration()), "Time");
+            TimeService timeService = new TimeService(config.getTickTime(), config.getTickUnit(), config.getDuration(),
+                    config.getTimeMode());
+            Thread timeServiceThread = ServiceThreads.newThread(timeService, "Time");
+            threads.add(timeServiceThread);
 
-            // Delay to ensure all threads are initialized before starting the time service
+            // The first tick is sent once every microservice has subscribed to its messages
             try {
-                Thread.sleep(300);
+                MessageBusImpl.getInstance().awaitMicroServices(0, TimeUnit.SECONDS);
                 timeServiceThread.start();
+                // Virtual threads are daemon threads, they do not keep the JVM alive on their own
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+                if (Boolean.getBoolean(TICK_TIMINGS_PROPERTY) && timeService.getTickTimings().getTicks() > 0) {
+                    System.err.println(timeService.getTickTimings());
+                }
             } catch (InterruptedException ie) {
                 System.err.println("Simulation was stopped");
             }
@@ -88,6 +118,75 @@ public class GurionRockRunner {
         }
     }
 
+    /**
+     * @return The name of the thread running a microservice on its own.
+     */
+    private static String threadName(MicroService microService) {
+        if (microService instanceof CameraService) {
+            return "Camera";
+        }
+        if (microService instanceof LiDarService) {
+            return "LiDar";
+        }
+        if (microService instanceof PoseService) {
+            return "Pose";
+        }
+        return "FusionSlam";
+    }
+
+    /**
+     * Applies the message queue limits of the configuration file to the message bus.
+     * Must be called before the microservices start, since a queue is allocated on registration.
+     *
+     * @param config The configuration file object.
+     */
+    public static void configureMailboxes(ConfigFile config) {
+        if (config.getMailboxes() != null) {
+            for (MailboxConfigurations mailbox : config.getMailboxes()) {
+                MessageBusImpl.getInstance().setMailboxLimit(mailbox.getService(), mailbox.getCapacity(),
+                        mailbox.getPolicy());
+            }
+        }
+    }
+
+    /**
+     * Applies the event routing strategies of the configuration file to the message bus,
+     * and weighs every LiDAR worker for weighted round robin by its frequency: the fewer
+     * ticks a worker waits before tracking a detection, the more detections it receives.
+     *
+     * @param config The configuration file object.
+     */
+    @SuppressWarnings("unchecked")
+    public static void configureRouting(ConfigFile config) {
+        if (config.getLidars() != null) {
+            List<LidarConfigurations> allLidar = config.getLidars().getLidars();
+            int maxFrequency = 0;
+            for (LidarConfigurations lidar : allLidar) {
+                maxFrequency = Math.max(maxFrequency, lidar.getFrequency());
+            }
+            for (LidarConfigurations lidar : allLidar) {
+                MessageBusImpl.getInstance().setRoutingWeight("LiDarWorkerTracker" + lidar.getId(),
+                        maxFrequency - lidar.getFrequency() + 1);
+            }
+        }
+        if (config.getRouting() != null) {
+            for (RoutingConfigurations routing : config.getRouting()) {
+                String name = routing.getEvent();
+                try {
+                    Class<?> type = Class.forName(name.contains(".") ? name : "bgu.spl.mics.application.messages." + name);
+                    if (!Event.class.isAssignableFrom(type)) {
+                        System.err.println("Routing ignored, not an event type: " + name);
+                        continue;
+                    }
+                    MessageBusImpl.getInstance().setRoutingStrategy((Class<? extends Event<?>>) type,
+                            routing.getStrategy());
+                } catch (ClassNotFoundException e) {
+                    System.err.println("Routing ignored, unknown event type: " + name);
+                }
+            }
+        }
+    }
+
     /**
      * Initializes camera services based on the configuration file.
      *
@@ -104,6 +203,19 @@ public class GurionRockRunner {
             }
             List<CamerasConfigurations> Cameras = config.getCameras().getAllCameras();
             Path cameraDataPath = configFileDir.resolve(cameraPath);
+            int cameraWindow = config.getCameras().getCameraWindow();
+            if (cameraWindow > 0) {
+                // Every camera streams its own detections instead of loading the whole file
+                for (CamerasConfigurations cameraInfo : Cameras) {
+                    CameraFrameReader frames = new CameraFrameReader(cameraDataPath, cameraInfo.getCameraKey(), gson);
+                    if (frames.foundCamera()) {
+                        Camera newCamera = new Camera(cameraInfo.getId(), cameraInfo.getFrequency(), frames,
+                                cameraWindow);
+                        camerasServices.add(new CameraService(newCamera));
+                    }
+                }
+                return camerasServices;
+            }
             try (FileReader reader = new FileReader(cameraDataPath.toString())) {
                 Type mapType = new TypeToken<Map<String, List<StampedDetectedObjects>>>() {
                 }.getType();
@@ -137,12 +249,18 @@ public class GurionRockRunner {
         List<LiDarService> liDarServices = new LinkedList<>();
         if (config.getLidars() != null) {
             List<LidarConfigurations> allLidar = config.getLidars().getLidars();
-            String lidarPath = config.getLidars().getLidarDataPath();
-            if (lidarPath.startsWith("./")) {
-                lidarPath = lidarPath.substring(2);
+            String sharedPath = config.getLidars().getLidarDataPath();
+            int lidarWindow = config.getLidars().getLidarWindow();
+            if (lidarWindow > 0) {
+                LiDarDataBase.useWindow(lidarWindow); // Keeps what the cameras may still ask for, however late
             }
-            Path LidarDataPath = configFileDir.resolve(lidarPath);
             for (LidarConfigurations lidar : allLidar) {
+                // A LiDAR may have its own data, workers reading the same file share it
+                String lidarPath = lidar.getLidarDataPath() != null ? lidar.getLidarDataPath() : sharedPath;
+                if (lidarPath.startsWith("./")) {
+                    lidarPath = lidarPath.substring(2);
+                }
+                Path LidarDataPath = configFileDir.resolve(lidarPath);
                 LiDarWorkerTracker newLidar = new LiDarWorkerTracker(lidar.getId(), lidar.getFrequency(),
                         LidarDataPath.toString(), numOfCameras);
                 liDarServices.add(new LiDarService(newLidar));
@@ -0,0 +1,36 @@
+package bgu.spl.mics.application;
+
+import java.io.IOException;
+
+import bgu.spl.mics.application.objects.CloudPointColumns;
+import bgu.spl.mics.application.objects.LiDarDataFile;
+
+/**
+ * Converts a LiDAR data file from JSON to the binary format of {@link LiDarDataFile}.
+ * The converted file can be used as "lidars_data_path" in the configuration file: the
+ * LiDAR data base maps it instead of parsing it, so a simulation starts without loading
+ * the LiDAR data.
+ */
+public class LiDarDataConverter {
+
+    /**
+     * The main method of the converter.
+     *
+     * @param args Command-line arguments: the path of the JSON LiDAR data file, and the
+     *             path of the binary file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: LiDarDataConverter <lidar data JSON file> <output file>");
+            return;
+        }
+        try {
+            CloudPointColumns columns = CloudPointColumns.readJson(args[0]);
+            LiDarDataFile.write(columns, args[1]);
+            System.out.println("Converted " + columns.size() + " entries (" + columns.points() + " cloud points) to "
+                    + args[1]);
+        } catch (IOException e) {
+            System.err.println("Failed to convert LiDAR data: " + e.getMessage());
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package bgu.spl.mics.application.messages;
 
-import bgu.spl.mics.Event;
+import bgu.spl.mics.AbstractEvent;
+import bgu.spl.mics.KeyedEvent;
 import bgu.spl.mics.application.objects.StampedDetectedObjects;
 
-public class DetectObjectsEvent implements Event<Boolean> {
+public class DetectObjectsEvent extends AbstractEvent<Boolean> implements KeyedEvent<Boolean> {
     private final int timeOfDetectedObjects;
     private final StampedDetectedObjects detectedObjects;
     private String senderName;
@@ -26,4 +27,14 @@ public class DetectObjectsEvent implements Event<Boolean> {
         return senderName;
     }
 
+    /**
+     * Routes the detections of a camera to the same LiDAR worker under key affinity routing.
+     *
+     * @return The name of the sending camera.
+     */
+    @Override
+    public Object getRoutingKey() {
+        return senderName;
+    }
+
 }
@@ -1,9 +1,9 @@
 package bgu.spl.mics.application.messages;
 import bgu.spl.mics.application.objects.*;
 
-import bgu.spl.mics.Event;
+import bgu.spl.mics.AbstractEvent;
 
-public class PoseEvent implements Event<Boolean> {
+public class PoseEvent extends AbstractEvent<Boolean> {
     private final Pose pose; // The pose associated with this event
 
     /**
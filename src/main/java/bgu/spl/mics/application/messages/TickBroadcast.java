@@ -1,8 +1,10 @@
 package bgu.spl.mics.application.messages;
 
 import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.CoalescibleBroadcast;
 
-public class TickBroadcast implements Broadcast {
+public class TickBroadcast implements CoalescibleBroadcast {
+    private final int fromTick; // The first tick covered by this broadcast
     private final int tickTime; // The current system time (tick)
 
     /**
@@ -11,6 +13,19 @@ public class TickBroadcast implements Broadcast {
      * @param tickTime The current system time (tick).
      */
     public TickBroadcast(int tickTime) {
+        this(tickTime, tickTime);
+    }
+
+    /**
+     * Constructs a new TickBroadcast covering the consecutive ticks
+     * {@code [fromTick, tickTime]}, delivered together to a lagging service, or sent
+     * at once by the TimeService when no sensor has work at the ticks before {@code tickTime}.
+     *
+     * @param fromTick The first tick covered.
+     * @param tickTime The current system time (tick), the last tick covered.
+     */
+    public TickBroadcast(int fromTick, int tickTime) {
+        this.fromTick = fromTick;
         this.tickTime = tickTime;
     }
 
@@ -22,4 +37,28 @@ public class TickBroadcast implements Broadcast {
     public int getCurrentTime() {
         return tickTime;
     }
+
+    /**
+     * Retrieves the first tick covered by this broadcast.
+     * Equal to {@link #getCurrentTime()} unless several ticks were coalesced.
+     *
+     * @return The first tick time.
+     */
+    public int getFromTime() {
+        return fromTick;
+    }
+
+    /**
+     * Merges this tick with the tick that follows it.
+     *
+     * @param later The broadcast queued right after this one.
+     * @return A TickBroadcast covering both ranges, or null if {@code later} is not the next tick.
+     */
+    @Override
+    public Broadcast coalesce(CoalescibleBroadcast later) {
+        if (later instanceof TickBroadcast && ((TickBroadcast) later).fromTick == tickTime + 1) {
+            return new TickBroadcast(fromTick, ((TickBroadcast) later).tickTime);
+        }
+        return null;
+    }
 }
@@ -2,10 +2,10 @@ package bgu.spl.mics.application.messages;
 
 import java.util.List;
 
-import bgu.spl.mics.Event;
+import bgu.spl.mics.AbstractEvent;
 import bgu.spl.mics.application.objects.TrackedObject;
 
-public class TrackedObjectsEvent implements Event<Boolean>{
+public class TrackedObjectsEvent extends AbstractEvent<Boolean> {
     private String senderName; // The name of the sender of the event
     private List<TrackedObject> trackedObjects; // The list of tracked objects associated with the event
 
@@ -1,5 +1,11 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -9,31 +15,83 @@ import bgu.spl.mics.application.messages.TickBroadcast;
 /**
  * Represents a camera sensor on the robot.
  * Responsible for detecting objects in the environment.
+ * <p>
+ * The detections are read in time order through two cursors: the next detection to take,
+ * and the oldest detection taken but not sent yet. Since every detection is sent
+ * {@code frequency} ticks after its time, the detections waiting to be sent are the ones
+ * between the two cursors, in the order of their release ticks. They are kept in a ring
+ * window, along with a bounded number of detections loaded ahead of the first cursor,
+ * so a camera can stream its detections instead of holding them all.
  */
 public class Camera {
     private final int id; // Unique identifier for the camera.
     private final String name; // The name for the camera.
     private final int frequency; // Camera's frequency 
     private STATUS status; // Current operational status of the camera ((UP, DOWN, ERROR).
-    private final List<StampedDetectedObjects> detectedObjectsList; // A list containing detected objects along with timestamps.
-    private LinkedList<CameraProcessed> waitingQueue; // Queue of camera's waiting data to be sent
+    private final Iterator<StampedDetectedObjects> frames; // Detections not loaded yet, in time order
+    private final int lookAhead; // Maximal number of detections loaded and not taken yet
+    private StampedDetectedObjects[] window; // Loaded detections not sent yet, detection i at i % window.length
+    private int loaded; // Number of detections loaded
+    private int detected; // Index of the next detection to take
+    private int sent; // Index of the oldest detection taken and not sent yet (detections waiting to be sent end at detected)
+    private int errorIndex; // Index of the first detection with an "ERROR" object, -1 if none was loaded
+    private int lastLoadedTime; // Time of the latest detection loaded
+    private String errorDescription; // Description of that "ERROR" object, null if none
     private StampedDetectedObjects lastDetectedObjects; // The last detected objects by the camera
 
         /**
-     * Constructs a Camera object.
+     * Constructs a Camera object holding all its detections.
      *
      * @param id                  The unique identifier for the camera.
      * @param frequency           The detection frequency of the camera.
      * @param detectedObjectsList Initial list of detected objects with timestamps.
      */
     public Camera(int id, int frequency, List<StampedDetectedObjects> detectedObjectsList) {
+        this(id, frequency, sortedByTime(detectedObjectsList).iterator(), Math.max(1, detectedObjectsList.size()));
+    }
+
+    /**
+     * Constructs a Camera object reading its detections as it goes (e.g. from a
+     * {@link CameraFrameReader}). A detection is read {@code lookAhead} detections before
+     * it is taken, and released once it is sent. If {@code frames} is {@link Closeable},
+     * it is closed once the camera is no longer up.
+     *
+     * @param id        The unique identifier for the camera.
+     * @param frequency The detection frequency of the camera.
+     * @param frames    The detected objects with timestamps, in time order. A detection older
+     *                  than the one read before it is skipped.
+     * @param lookAhead The maximal number of detections read and not taken yet.
+     * @throws IllegalArgumentException if {@code lookAhead} is not positive.
+     */
+    public Camera(int id, int frequency, Iterator<StampedDetectedObjects> frames, int lookAhead) {
+        if (lookAhead <= 0) {
+            throw new IllegalArgumentException("Camera look-ahead must be positive: " + lookAhead);
+        }
         this.id = id;
         this.name = "Camera" + String.valueOf(id);
         this.frequency = frequency;
-        this.detectedObjectsList = new LinkedList<>(detectedObjectsList);
+        this.frames = frames;
+        this.lookAhead = lookAhead;
+        this.window = new StampedDetectedObjects[lookAhead];
+        this.loaded = 0;
+        this.detected = 0;
+        this.sent = 0;
+        this.errorIndex = -1;
+        this.lastLoadedTime = Integer.MIN_VALUE;
+        this.errorDescription = null;
         this.status = STATUS.UP; // Cameras start in the UP (active) state.
-        this.waitingQueue = new LinkedList<>();
         lastDetectedObjects = new StampedDetectedObjects();
+        load();
+        reportProgress();
+    }
+
+    /**
+     * @return A copy of {@code detectedObjectsList} sorted by time, frames of the same time kept in order.
+     */
+    private static List<StampedDetectedObjects> sortedByTime(List<StampedDetectedObjects> detectedObjectsList) {
+        List<StampedDetectedObjects> sorted = new ArrayList<>(detectedObjectsList);
+        sorted.sort(Comparator.comparingInt(StampedDetectedObjects::getTime));
+        return sorted;
     }
 
     /**
@@ -72,8 +130,15 @@ public class Camera {
         return frequency;
     }
 
+    /**
+     * @return The detections the camera loaded and has not taken yet, sorted by time (read-only).
+     */
     public List<StampedDetectedObjects> getDetectedObjectsList() {
-        return detectedObjectsList;
+        List<StampedDetectedObjects> notTaken = new ArrayList<>(loaded - detected);
+        for (int i = detected; i < loaded; i++) {
+            notTaken.add(frame(i));
+        }
+        return Collections.unmodifiableList(notTaken);
     }
 
     /**
@@ -91,107 +156,184 @@ public class Camera {
     */
     public void setStatus(STATUS error) {
         this.status = error;
+        reportProgress();
+        if (error != STATUS.UP && frames instanceof Closeable) {
+            try {
+                ((Closeable) frames).close(); // The remaining detections will never be read
+            } catch (IOException e) {
+                System.err.println("Failed to close " + name + "'s data: " + e.getMessage());
+            }
+        }
     }
 
     /**
      * Processes a {@link TickBroadcast} to detect objects at the appropriate frequency.
-     * Handles detected objects, processes errors, and checks if detections are ready to be sent.
+     * A coalesced broadcast is handled from {@link TickBroadcast#getFromTime()} up to the
+     * current time, jumping from one tick with work to the next (see {@link #nextWorkTick(int)}),
+     * and stopping as soon as the camera is no longer up.
      *
      * @param tick The {@link TickBroadcast} containing the current simulation time.
-     * @return A {@link DetectObjectsEvent} if detections are ready to be sent, otherwise null.
-     */
-    public DetectObjectsEvent processTick(TickBroadcast tick) {
-        // Check if there are detections remaining
-        if (this.detectedObjectsList.size() != 0) {
-            // Potential detected objects at tick time
-            StampedDetectedObjects nextDetectedObjects = getDetectedObjectsList().get(0);
-            int currentTickTime = tick.getCurrentTime();
-            if (currentTickTime == nextDetectedObjects.getTime()) {
-                boolean error = checkForError(nextDetectedObjects, currentTickTime);
-                // Case that no error was detected
-                if (!error){
-                    putOnWaitingQueue(nextDetectedObjects, currentTickTime);
-                }
-                else{
-                    return null;
-                }
+     * @return The {@link DetectObjectsEvent}s ready to be sent, in order (empty if none).
+     */
+    public List<DetectObjectsEvent> processTick(TickBroadcast tick) {
+        List<DetectObjectsEvent> events = new LinkedList<>();
+        int tickTime = tick.getFromTime();
+        while (tickTime <= tick.getCurrentTime() && getStatus() == STATUS.UP) {
+            processTickTime(tickTime, events);
+            tickTime = Math.max(tickTime + 1, nextWorkTick(tickTime));
+        }
+        reportProgress();
+        return events;
+    }
+
+    /**
+     * Computes the next tick at which the camera has work: its next detection, or the
+     * release of its oldest waiting detection. Called by the TimeService in next-event mode,
+     * while the CameraService is idle.
+     *
+     * @param tickTime The last tick sent.
+     * @return The next tick at which the camera has work, or {@link TickSchedule#NO_WORK}.
+     */
+    public int nextWorkTick(int tickTime) {
+        if (getStatus() != STATUS.UP) {
+            return TickSchedule.NO_WORK;
+        }
+        int next = TickSchedule.NO_WORK;
+        if (detected < loaded) {
+            next = frame(detected).getTime();
+        }
+        if (sent < detected) {
+            next = Math.min(next, releaseTime(sent));
+        }
+        return next;
+    }
+
+    /**
+     * Processes a single tick.
+     * Takes every detection whose time has come (more than one if several share a time,
+     * or if the time of a detection was skipped), stops on an error, and then sends every
+     * detection whose release tick has come.
+     *
+     * @param currentTickTime The tick to process.
+     * @param events          Receives a {@link DetectObjectsEvent} for every detection ready to be sent.
+     */
+    private void processTickTime(int currentTickTime, List<DetectObjectsEvent> events) {
+        // Take the detections due at tick time
+        while (detected < loaded && frame(detected).getTime() <= currentTickTime) {
+            if (checkForError(currentTickTime)) {
+                return;
             }
+            takeDetection(frame(detected));
         }
         // Objects are ready to be sent to lidar
-        DetectObjectsEvent doe = detectionToSend(tick.getCurrentTime());
+        while (sent < detected && releaseTime(sent) <= currentTickTime) {
+            StampedDetectedObjects stampedToLiDar = frame(sent);
+            window[sent++ % window.length] = null; // Released, the camera will not read it again
+            DetectionProgress.getInstance().detectionSent(stampedToLiDar.getTime());
+            events.add(new DetectObjectsEvent(stampedToLiDar, stampedToLiDar.getTime(), getName()));
+        }
         // Checks if camera finishes its job and terminate in case it is
         checkIfFinish();
-        return doe;
     }
 
 
      /**
-     * Checks if there are any errors in the detected objects.
+     * Checks if the next detection has an error, using the index built on construction.
      * If an error is found, the camera status is set to ERROR, and the error is reported to the {@link ErrorCoordinator}.
      *
-     * @param nextDetectedObjects The detected objects to check.
-     * @param tickTime            The current tick time.
+     * @param tickTime The current tick time.
      * @return {@code true} if an error was detected, otherwise {@code false}.
      */
-    private boolean checkForError(StampedDetectedObjects nextDetectedObjects, int tickTime) {
-        for (DetectedObject dob : nextDetectedObjects.getDetectedObjects()) {
-            // Error was detected
-            if (dob.getId().equals("ERROR")) {
-                setStatus(STATUS.ERROR);
-                ErrorCoordinator.getInstance().setLastFramesCameras(getName(), lastDetectedObjects);
-                ErrorCoordinator.getInstance().setCrashed("Camera "+ String.valueOf(getID()), tickTime, dob.getDescription());
-                return true;
-            }
+    private boolean checkForError(int tickTime) {
+        if (detected != errorIndex) {
+            return false;
         }
-        return false;
+        // Error was detected
+        setStatus(STATUS.ERROR);
+        ErrorCoordinator.getInstance().setLastFramesCameras(getName(), lastDetectedObjects);
+        ErrorCoordinator.getInstance().setCrashed("Camera "+ String.valueOf(getID()), tickTime, errorDescription);
+        return true;
     }
 
     /**
-     * Adds detected objects to the waiting queue for processing and updates system statistics.
+     * Moves the next detection to the detections waiting to be sent, loads the next one,
+     * and updates system statistics.
      *
-     * @param nextDetectedObjects The detected objects to be added to the waiting list.
-     * @param tickTime            The current tick time when the objects were detected.
+     * @param nextDetectedObjects The next detection, at the detection cursor.
      */
-    private void putOnWaitingQueue(StampedDetectedObjects nextDetectedObjects, int tickTime) {
-
-        // Calculate the processing time based on the camera's frequency
-        int processingTime = tickTime + this.frequency;
-
-        // Create a CameraProcessed object with the processing time and detected objects
-
-        CameraProcessed processedObject = new CameraProcessed(processingTime, nextDetectedObjects);
-        // Add the processed object to the waiting list
-        waitingQueue.add(processedObject);
+    private void takeDetection(StampedDetectedObjects nextDetectedObjects) {
+        detected++;
         lastDetectedObjects = nextDetectedObjects;
-        // Remove the detected objects from the camera's list and update statistics
-        int detectedObjectCount = this.detectedObjectsList.remove(0).getDetectedObjects().size();
-        StatisticalFolder.getInstance().incrementDetectedObjects(detectedObjectCount);
+        StatisticalFolder.getInstance().incrementDetectedObjects(nextDetectedObjects.getDetectedObjects().size());
+        load();
     }
 
     /**
-     * Sends detected objects to the LiDAR service if their processing time matches the current tick.
-     *
-     * @param tickTime The current tick time.
-     * @return A {@link DetectObjectsEvent} if detections are ready to be sent, otherwise null.
+     * Reads detections until {@code lookAhead} of them are loaded and not taken, or there
+     * are no more. Remembers the first detection with an "ERROR" object, since the camera
+     * stops at its first error and later ones are never reached. A detection older than
+     * the latest one loaded is skipped, since its tick may already be processed.
      */
-    private DetectObjectsEvent detectionToSend(int tickTime) {
-
-        // Process detections that are ready to be sent at the current tick
-        if (getStatus() == STATUS.UP && !waitingQueue.isEmpty()
-                && waitingQueue.getFirst().getProcessionTime() == tickTime) {
+    private void load() {
+        while (loaded - detected < lookAhead && frames.hasNext()) {
+            StampedDetectedObjects next = frames.next();
+            if (next.getTime() < lastLoadedTime) {
+                System.err.println(name + "'s data out of time order, skipped time " + next.getTime());
+                continue;
+            }
+            lastLoadedTime = next.getTime();
+            if (loaded - sent == window.length) {
+                grow(); // Every loaded detection still waits to be sent
+            }
+            window[loaded % window.length] = next;
+            if (errorIndex < 0) {
+                for (DetectedObject dob : next.getDetectedObjects()) {
+                    if (dob.getId().equals("ERROR")) {
+                        errorIndex = loaded;
+                        errorDescription = dob.getDescription();
+                        break;
+                    }
+                }
+            }
+            loaded++;
+        }
+    }
 
-            // Remove the first waiting detection from the queue
-            CameraProcessed toLidar = waitingQueue.removeFirst();
+    /**
+     * Reports the time of the oldest detection the camera has not sent yet, so that the
+     * LiDAR data of that time is kept (see {@link DetectionProgress}). Later detections
+     * are not older, since they are loaded in time order.
+     */
+    private void reportProgress() {
+        boolean sending = getStatus() == STATUS.UP && sent < loaded;
+        DetectionProgress.getInstance().cameraProgress(this, sending ? frame(sent).getTime() : Integer.MAX_VALUE);
+    }
 
-            // Extract the stamped detected objects
-            StampedDetectedObjects stampedToLiDar = toLidar.getDetectedObject();
+    /**
+     * Doubles the window, keeping every detection at its index.
+     */
+    private void grow() {
+        StampedDetectedObjects[] larger = new StampedDetectedObjects[window.length * 2];
+        for (int i = sent; i < loaded; i++) {
+            larger[i % larger.length] = frame(i);
+        }
+        window = larger;
+    }
 
-            // Create a DetectObjectsEvent
-            DetectObjectsEvent doe = new DetectObjectsEvent(stampedToLiDar, stampedToLiDar.getTime(), getName());
+    /**
+     * @param index The index of a loaded detection not sent yet.
+     * @return The detection.
+     */
+    private StampedDetectedObjects frame(int index) {
+        return window[index % window.length];
+    }
 
-            return doe;
-        }
-        return null;
+    /**
+     * @param index The index of a detection.
+     * @return The tick at which the detection is sent to the LiDAR workers, based on the camera's frequency.
+     */
+    private int releaseTime(int index) {
+        return frame(index).getTime() + this.frequency;
     }
 
     /**
@@ -203,7 +345,7 @@ public class Camera {
      * - All waiting objects have been sent.
      */
     private void checkIfFinish() {
-        if (getStatus() == STATUS.UP && this.detectedObjectsList.size() == 0 && waitingQueue.isEmpty()) {
+        if (getStatus() == STATUS.UP && detected == loaded && sent == detected) {
             setStatus(STATUS.DOWN);
             ErrorCoordinator.getInstance().setLastFramesCameras(getName(), lastDetectedObjects);
         }
@@ -222,7 +364,7 @@ public class Camera {
              ", name='" + name + '\'' +
              ", frequency=" + frequency +
              ", status=" + status +
-             ", detectedObjectsList=" + detectedObjectsList.toArray().toString() +
+             ", detectedObjectsList=" + getDetectedObjectsList() +
              '}';
      }
 }
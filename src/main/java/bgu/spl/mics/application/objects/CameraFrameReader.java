@@ -0,0 +1,118 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the detections of one camera from the camera data file, one at a time.
+ * <p>
+ * The file maps every camera key to its list of detections. The reader skips the lists
+ * of the other cameras without building them, then parses the camera's detections only
+ * when they are asked for, so a {@link Camera} fed by it holds no more than its window.
+ * The detections must be listed in time order, as they are not sorted.
+ * Used for JSON reading
+ */
+public class CameraFrameReader implements Iterator<StampedDetectedObjects>, Closeable {
+    private final Gson gson; // Parses a single detection
+    private final String cameraKey; // The key of the camera in the file
+    private final boolean found; // Whether the file has the camera's key
+    private JsonReader reader; // Positioned in the camera's list, null once the list is over or closed
+    private StampedDetectedObjects next; // The next detection, read ahead by hasNext()
+
+    /**
+     * Opens the camera data file and moves to the camera's list of detections.
+     *
+     * @param cameraDataPath The path to the camera data file.
+     * @param cameraKey      The key of the camera in the file.
+     * @param gson           Gson instance for JSON parsing.
+     */
+    public CameraFrameReader(Path cameraDataPath, String cameraKey, Gson gson) {
+        this.gson = gson;
+        this.cameraKey = cameraKey;
+        this.next = null;
+        boolean inList = false;
+        try {
+            reader = new JsonReader(new BufferedReader(new FileReader(cameraDataPath.toString())));
+            reader.beginObject();
+            while (!inList && reader.hasNext()) {
+                if (reader.nextName().equals(cameraKey)) {
+                    reader.beginArray();
+                    inList = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Failed to load Camera's Data: " + e.getMessage());
+        }
+        this.found = inList;
+        if (!inList) {
+            close();
+        }
+    }
+
+    /**
+     * @return true if the camera data file has a list of detections for the camera.
+     */
+    public boolean foundCamera() {
+        return found;
+    }
+
+    /**
+     * @return true if the camera has more detections. Closes the file once they are over.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null && reader != null) {
+            try {
+                if (reader.hasNext()) {
+                    next = gson.fromJson(reader, StampedDetectedObjects.class);
+                } else {
+                    close();
+                }
+            } catch (IOException | JsonParseException e) {
+                System.err.println("Failed to load " + cameraKey + "'s data: " + e.getMessage());
+                close();
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * @return The next detection of the camera.
+     * @throws NoSuchElementException if there are no more detections.
+     */
+    @Override
+    public StampedDetectedObjects next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        StampedDetectedObjects current = next;
+        next = null;
+        return current;
+    }
+
+    /**
+     * Closes the file. The detections not read yet are never read.
+     */
+    @Override
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close " + cameraKey + "'s data: " + e.getMessage());
+            }
+            reader = null;
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class Cameras {
 
     private List<CamerasConfigurations> CamerasConfigurations;
     private String camera_datas_path;
+    private Integer camera_window; // Optional number of detections each camera reads ahead, all of them when missing
 
     /**
      * Constructor to initialize with a list of camera configurations and the data path.
@@ -17,8 +18,20 @@ public class Cameras {
      * @param camera_datas_path        The file path for camera data.
      */
     public Cameras(List<CamerasConfigurations> CamerasConfigurations, String camera_datas_path) {
+        this(CamerasConfigurations, camera_datas_path, null);
+    }
+
+    /**
+     * Constructor to initialize with a list of camera configurations, the data path and the camera window.
+     *
+     * @param camerasConfigurations The list of camera configurations.
+     * @param camera_datas_path        The file path for camera data.
+     * @param camera_window            The number of detections each camera reads ahead, or null to load them all.
+     */
+    public Cameras(List<CamerasConfigurations> CamerasConfigurations, String camera_datas_path, Integer camera_window) {
         this.CamerasConfigurations = CamerasConfigurations; // Create a copy for immutability
         this.camera_datas_path = camera_datas_path;
+        this.camera_window = camera_window;
     }
 
     /**
@@ -63,6 +76,14 @@ public class Cameras {
         return camera_datas_path;
     }
 
+    /**
+     * @return The number of detections each camera reads ahead of the current tick when
+     *         streaming the camera data, or 0 to load the whole file up front.
+     */
+    public int getCameraWindow() {
+        return camera_window != null ? camera_window : 0;
+    }
+
      /**
      * Sets the file path to the camera data.
      *
@@ -77,6 +98,7 @@ public class Cameras {
         return "Cameras{" +
                 "camerasConfigurations=" + CamerasConfigurations +
                 ", cameraDataPath='" + camera_datas_path + '\'' +
+                ", cameraWindow=" + camera_window +
                 '}';
     }
 }
\ No newline at end of file
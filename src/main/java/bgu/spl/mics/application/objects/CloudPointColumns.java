@@ -0,0 +1,251 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Stores the LiDAR data in columns of primitives: every entry is an object id tracked at
+ * a time, and its cloud points are a range of a flat array of x coordinates and a flat
+ * array of y coordinates. The z coordinates are never used, so they are not kept.
+ * Compared to a {@code List<List<Double>>} per entry, a point takes 16 bytes instead of
+ * three boxed doubles and two lists.
+ * <p>
+ * Filled while the data is loaded, in file order, then only read.
+ */
+public class CloudPointColumns implements LiDarEntries {
+    private double[] xs; // x coordinate of every point, entry after entry
+    private double[] ys; // y coordinate of every point, entry after entry
+    private int points; // Number of points added
+    private int[] times; // Time of every entry
+    private String[] ids; // Object id of every entry
+    private int[] offsets; // Index of the first point of every entry, followed by the number of points
+    private int entries; // Number of entries added
+
+    /**
+     * Constructs empty columns.
+     */
+    public CloudPointColumns() {
+        this.xs = new double[64];
+        this.ys = new double[64];
+        this.points = 0;
+        this.times = new int[16];
+        this.ids = new String[16];
+        this.offsets = new int[17];
+        this.entries = 0;
+    }
+
+    /**
+     * Reads a LiDAR data file in JSON into columns, without building a list per cloud point.
+     * The file is a list of objects with a "time", an "id" and "cloudPoints", a list of
+     * [x, y, z] coordinates.
+     *
+     * @param filePath The path to the JSON file containing the LiDAR data.
+     * @return The columns, trimmed.
+     * @throws IOException if the file cannot be read or is not valid JSON.
+     */
+    public static CloudPointColumns readJson(String filePath) throws IOException {
+        CloudPointColumns columns = new CloudPointColumns();
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(filePath)))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readEntry(reader, columns);
+            }
+            reader.endArray();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        columns.trim();
+        return columns;
+    }
+
+    /**
+     * Reads one object of the LiDAR data file into the columns, as their last entry.
+     */
+    static void readEntry(JsonReader reader, CloudPointColumns columns) throws IOException {
+        int time = 0;
+        String id = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("time")) {
+                time = reader.nextInt();
+            } else if (name.equals("id") && reader.peek() != JsonToken.NULL) {
+                id = reader.nextString();
+            } else if (name.equals("cloudPoints") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    reader.beginArray();
+                    double x = reader.nextDouble();
+                    double y = reader.nextDouble();
+                    while (reader.hasNext()) {
+                        reader.skipValue(); // z is never used
+                    }
+                    reader.endArray();
+                    columns.addPoint(x, y);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        columns.addEntry(time, id);
+    }
+
+    /**
+     * Adds a point to the entry being read.
+     *
+     * @param x The x coordinate of the point.
+     * @param y The y coordinate of the point.
+     */
+    public void addPoint(double x, double y) {
+        if (points == xs.length) {
+            xs = Arrays.copyOf(xs, xs.length * 2);
+            ys = Arrays.copyOf(ys, ys.length * 2);
+        }
+        xs[points] = x;
+        ys[points] = y;
+        points++;
+    }
+
+    /**
+     * Ends an entry: the points added since the previous entry are its cloud points.
+     *
+     * @param time The time the object was tracked.
+     * @param id   The ID of the object.
+     */
+    public void addEntry(int time, String id) {
+        if (entries == times.length) {
+            times = Arrays.copyOf(times, times.length * 2);
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2 - 1);
+        }
+        times[entries] = time;
+        ids[entries] = id;
+        entries++;
+        offsets[entries] = points;
+    }
+
+    /**
+     * Moves the last entry, with its points, to the end of other columns.
+     *
+     * @param target The columns to add the entry to.
+     */
+    void moveLastEntry(CloudPointColumns target) {
+        int last = entries - 1;
+        for (int point = offsets[last]; point < offsets[last + 1]; point++) {
+            target.addPoint(xs[point], ys[point]);
+        }
+        target.addEntry(times[last], ids[last]);
+        points = offsets[last];
+        ids[last] = null;
+        entries = last;
+    }
+
+    /**
+     * Releases the unused capacity of the columns, once every entry was added.
+     */
+    public void trim() {
+        xs = Arrays.copyOf(xs, points);
+        ys = Arrays.copyOf(ys, points);
+        times = Arrays.copyOf(times, entries);
+        ids = Arrays.copyOf(ids, entries);
+        offsets = Arrays.copyOf(offsets, entries + 1);
+    }
+
+    /**
+     * Finds the times with an "ERROR" object. Entries with identical consecutive times form
+     * a group; a time counts only if no earlier group has a later time, as when walking the
+     * groups in order and stopping at the first later time. Negative times are left out.
+     *
+     * @return The times at which a LiDAR worker hits an error.
+     */
+    public BitSet errorTimes() {
+        BitSet errorTimes = new BitSet();
+        int latestTime = Integer.MIN_VALUE; // Latest time of the groups before the current one
+        for (int entry = 0; entry < entries; entry++) {
+            int time = times[entry];
+            if (entry > 0 && time != times[entry - 1]) {
+                latestTime = Math.max(latestTime, times[entry - 1]);
+            }
+            if (time >= latestTime && time >= 0 && "ERROR".equals(ids[entry])) {
+                errorTimes.set(time);
+            }
+        }
+        return errorTimes;
+    }
+
+    /**
+     * @return The number of points, over every entry.
+     */
+    public int points() {
+        return points;
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The index of the entry's first point in the columns.
+     */
+    public int getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @param point The index of a point in the columns.
+     * @return The x coordinate of the point.
+     */
+    public double getX(int point) {
+        return xs[point];
+    }
+
+    /**
+     * @param point The index of a point in the columns.
+     * @return The y coordinate of the point.
+     */
+    public double getY(int point) {
+        return ys[point];
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    @Override
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The time the entry's object was tracked.
+     */
+    @Override
+    public int getTime(int entry) {
+        return times[entry];
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The ID of the entry's object.
+     */
+    @Override
+    public String getId(int entry) {
+        return ids[entry];
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return A view of the entry's cloud points, sharing the columns.
+     */
+    @Override
+    public CloudPointsView getCloudPoints(int entry) {
+        return new CloudPointsView(DoubleBuffer.wrap(xs), DoubleBuffer.wrap(ys), offsets[entry],
+                offsets[entry + 1] - offsets[entry]);
+    }
+}
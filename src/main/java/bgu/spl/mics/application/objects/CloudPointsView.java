@@ -0,0 +1,53 @@
+package bgu.spl.mics.application.objects;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A read-only view of the cloud points of one LiDAR entry, over the columns of a
+ * {@link CloudPointColumns} or of a memory-mapped {@link LiDarDataFile}. Creating one
+ * copies nothing.
+ */
+public final class CloudPointsView {
+    private final DoubleBuffer xs; // The x column
+    private final DoubleBuffer ys; // The y column
+    private final int offset; // Index of the first point in the columns
+    private final int length; // Number of points
+
+    /**
+     * Constructs a view of a range of the columns.
+     *
+     * @param xs     The x coordinates of the points.
+     * @param ys     The y coordinates of the points.
+     * @param offset The index of the first point of the view.
+     * @param length The number of points of the view.
+     */
+    CloudPointsView(DoubleBuffer xs, DoubleBuffer ys, int offset, int length) {
+        this.xs = xs;
+        this.ys = ys;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return The number of cloud points.
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * @param index The index of a cloud point, from 0 to {@link #size()} - 1.
+     * @return The x coordinate of the point.
+     */
+    public double getX(int index) {
+        return xs.get(offset + index);
+    }
+
+    /**
+     * @param index The index of a cloud point, from 0 to {@link #size()} - 1.
+     * @return The y coordinate of the point.
+     */
+    public double getY(int index) {
+        return ys.get(offset + index);
+    }
+}
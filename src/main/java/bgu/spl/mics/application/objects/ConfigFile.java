@@ -1,5 +1,8 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Represents the configuration file for the simulation.
  * Contains settings for cameras, LiDAR workers, pose data, and simulation timing.
@@ -10,7 +13,11 @@ public class ConfigFile {
     private final LiDarWorkers LiDarWorkers; // LiDAR worker configurations
     private final String poseJsonFile;       // File path for pose data
     private final int TickTime;              // Time duration for each simulation tick
+    private final TimeUnit TickUnit;         // Optional unit of TickTime, seconds when missing
     private final int Duration;              // Total simulation duration
+    private final List<MailboxConfigurations> Mailboxes; // Optional message queue limits
+    private final List<RoutingConfigurations> Routing; // Optional event routing strategies
+    private final TimeMode TimeMode;         // Optional clock mode, real time when missing
 
   /**
      * Parameterized constructor to initialize the configuration.
@@ -19,14 +26,23 @@ public class ConfigFile {
      * @param LiDarWorkers  The lidar configuration.
      * @param poseJsonFile  The file path for pose data.
      * @param TickTime      The time duration for each simulation tick.
+     * @param TickUnit      The unit of TickTime, or null for seconds.
      * @param Duration      The total duration of the simulation.
+     * @param Mailboxes     The message queue limits, or null for unbounded queues.
+     * @param Routing       The event routing strategies, or null for round robin everywhere.
+     * @param TimeMode      How the clock advances, or null for real time.
      */
-    public ConfigFile(Cameras Cameras, LiDarWorkers LiDarWorkers, String poseJsonFile, int TickTime, int Duration) {
+    public ConfigFile(Cameras Cameras, LiDarWorkers LiDarWorkers, String poseJsonFile, int TickTime, TimeUnit TickUnit, int Duration,
+                      List<MailboxConfigurations> Mailboxes, List<RoutingConfigurations> Routing, TimeMode TimeMode) {
         this.Cameras = Cameras;
         this.LiDarWorkers = LiDarWorkers;
         this.poseJsonFile = poseJsonFile;
         this.TickTime = TickTime;
+        this.TickUnit = TickUnit;
         this.Duration = Duration;
+        this.Mailboxes = Mailboxes;
+        this.Routing = Routing;
+        this.TimeMode = TimeMode;
     }
 
     /**
@@ -57,6 +73,13 @@ public class ConfigFile {
         return TickTime;
     }
 
+    /**
+     * @return The unit of the tick duration, seconds if none was configured.
+     */
+    public TimeUnit getTickUnit() {
+        return TickUnit != null ? TickUnit : TimeUnit.SECONDS;
+    }
+
     /**
      * @return The total duration of the simulation.
      */
@@ -64,6 +87,27 @@ public class ConfigFile {
         return Duration;
     }
 
+    /**
+     * @return The message queue limits, or null if none were configured.
+     */
+    public List<MailboxConfigurations> getMailboxes() {
+        return Mailboxes;
+    }
+
+    /**
+     * @return The event routing strategies, or null if none were configured.
+     */
+    public List<RoutingConfigurations> getRouting() {
+        return Routing;
+    }
+
+    /**
+     * @return How the clock advances, real time if none was configured.
+     */
+    public TimeMode getTimeMode() {
+        return TimeMode != null ? TimeMode : bgu.spl.mics.application.objects.TimeMode.REAL_TIME;
+    }
+
     @Override
     public String toString() {
         return "Config{" +
@@ -71,7 +115,11 @@ public class ConfigFile {
                 ", lidars=" + LiDarWorkers +
                 ", poseFilePath='" + poseJsonFile + '\'' +
                 ", tickTime=" + TickTime +
+                ", tickUnit=" + TickUnit +
                 ", duration=" + Duration +
+                ", mailboxes=" + Mailboxes +
+                ", routing=" + Routing +
+                ", timeMode=" + TimeMode +
                 '}';
     }
 }
@@ -0,0 +1,109 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks the oldest detection time a LiDAR worker may still be asked to track, so that a
+ * {@link LiDarWindow} keeps the LiDAR data of that time however far the cameras lag behind
+ * the workers. Implements the Singleton pattern to ensure only one instance exists.
+ * <p>
+ * A detection is covered from the moment a camera loads it until a worker tracks it: every
+ * camera reports the time of its oldest detection not sent yet, and every detection sent is
+ * counted until a worker tracks it. A detection that never reaches a worker (e.g. every
+ * worker stopped) keeps its time, which only makes the windows keep more data.
+ */
+public class DetectionProgress {
+    // Singleton instance holder
+    private static class DetectionProgressHolder {
+        private static DetectionProgress instance = new DetectionProgress();
+    }
+
+    private final IdentityHashMap<Camera, Integer> oldestUnsent; // Time of the oldest detection every camera has not sent yet
+    private final TreeMap<Integer, Integer> untracked; // Number of detections sent and not tracked yet, by time
+    private final ReentrantLock lock; // Guards the fields above
+
+    /**
+     * Private constructor, the instance is shared through {@link #getInstance()}.
+     */
+    private DetectionProgress() {
+        this.oldestUnsent = new IdentityHashMap<>(); // Cameras may share a name
+        this.untracked = new TreeMap<>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @return The singleton instance of DetectionProgress.
+     */
+    public static DetectionProgress getInstance() {
+        return DetectionProgressHolder.instance;
+    }
+
+    /**
+     * Reports the detections a camera has not sent yet.
+     *
+     * @param camera     The camera.
+     * @param oldestTime The time of its oldest detection not sent yet, or {@code Integer.MAX_VALUE}
+     *                   if it will not send anything anymore.
+     */
+    public void cameraProgress(Camera camera, int oldestTime) {
+        lock.lock();
+        try {
+            if (oldestTime == Integer.MAX_VALUE) {
+                oldestUnsent.remove(camera);
+            } else {
+                oldestUnsent.put(camera, oldestTime);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts a detection sent to the LiDAR workers. Must be called before the camera
+     * reports a progress past it.
+     *
+     * @param time The time of the detection.
+     */
+    public void detectionSent(int time) {
+        lock.lock();
+        try {
+            untracked.merge(time, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops counting a detection once a worker tracked it. Ignored if no detection of this
+     * time was counted (e.g. an event not sent by a camera).
+     *
+     * @param time The time of the detection.
+     */
+    public void detectionTracked(int time) {
+        lock.lock();
+        try {
+            untracked.computeIfPresent(time, (t, count) -> count > 1 ? count - 1 : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The oldest time a LiDAR worker may still be asked to track,
+     *         or {@code Integer.MAX_VALUE} if none.
+     */
+    public int oldestNeeded() {
+        lock.lock();
+        try {
+            int oldest = untracked.isEmpty() ? Integer.MAX_VALUE : untracked.firstKey();
+            for (int time : oldestUnsent.values()) {
+                oldest = Math.min(oldest, time);
+            }
+            return oldest;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package bgu.spl.mics.application.objects;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Manages the error state of the system, specifically when a sensor failure or crash occurs.
@@ -18,8 +19,9 @@ public class ErrorCoordinator {
     private final HashMap<String, StampedDetectedObjects> lastFramesCameras; // Stores the last frames detected by cameras
     private final HashMap<String, List<TrackedObject>> lastFramesLidars; // Stores the last frames tracked by LiDARs
     private final List<Pose> robotPoses; // Stores the robot's poses
-    private final Object lockLastFramesCameras; // Lock object for synchronizing camera frame access
-    private final Object lockLastFramesLidars; // Lock object for synchronizing LiDAR frame access
+    private final ReentrantLock lockLastFramesCameras; // Lock for synchronizing camera frame access
+    private final ReentrantLock lockLastFramesLidars; // Lock for synchronizing LiDAR frame access
+    private final ReentrantLock lockCrash; // Lock for recording the crash only once
     private boolean isCrashed = false; // Flag to track if the system has crashed
     private String description = ""; // Description of the error reason
     private String faultSensor = ""; // The name of the faulty sensor
@@ -34,8 +36,10 @@ public class ErrorCoordinator {
         this.lastFramesCameras = new HashMap<>();
         this.lastFramesLidars = new HashMap<>();
         this.robotPoses = new LinkedList<>();
-        this.lockLastFramesCameras = new Object();
-        this.lockLastFramesLidars = new Object();
+        // Locks rather than monitors, so that services on virtual threads do not pin their carrier
+        this.lockLastFramesCameras = new ReentrantLock();
+        this.lockLastFramesLidars = new ReentrantLock();
+        this.lockCrash = new ReentrantLock();
     }
 
     /**
@@ -109,8 +113,11 @@ public class ErrorCoordinator {
      * @param lastDetectedObjects The detected objects in the current camera frame.
      */
     public void setLastFramesCameras(String cameraName,StampedDetectedObjects lastDetectedObjects) {
-        synchronized (lockLastFramesCameras) {
+        lockLastFramesCameras.lock();
+        try {
             lastFramesCameras.put(cameraName, lastDetectedObjects);
+        } finally {
+            lockLastFramesCameras.unlock();
         }
     }
 
@@ -122,8 +129,11 @@ public class ErrorCoordinator {
      * @param lastTrackedObject The tracked objects in the current LiDAR frame.
      */
     public void setLastFramesLidars(String lidarName,List<TrackedObject> lastTrackedObject) {
-        synchronized (lockLastFramesLidars) {
+        lockLastFramesLidars.lock();
+        try {
             lastFramesLidars.put(lidarName, lastTrackedObject);
+        } finally {
+            lockLastFramesLidars.unlock();
         }
     }
 
@@ -135,12 +145,17 @@ public class ErrorCoordinator {
      * @param crashedTick The tick when the crash occurred.
      * @param description A description of the error reason.
      */
-    public synchronized void setCrashed(String faultSensor,int crashedTick, String description) {
-        if (!isCrashed){
-            this.description = description;
-            this.faultSensor = faultSensor;
-            this.crashedTick = crashedTick;
-            isCrashed = true;
+    public void setCrashed(String faultSensor,int crashedTick, String description) {
+        lockCrash.lock();
+        try {
+            if (!isCrashed){
+                this.description = description;
+                this.faultSensor = faultSensor;
+                this.crashedTick = crashedTick;
+                isCrashed = true;
+            }
+        } finally {
+            lockCrash.unlock();
         }
     }
 
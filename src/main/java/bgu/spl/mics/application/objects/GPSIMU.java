@@ -1,5 +1,6 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.LinkedList;
 import java.util.List;
 
 import bgu.spl.mics.application.messages.PoseEvent;
@@ -120,20 +121,59 @@ public class GPSIMU {
 
     /**
      * Processes a tick event, updating the robot's current pose and broadcasting a {@link PoseEvent}.
+     * A broadcast covering several ticks (see {@link TickBroadcast#getFromTime()}) is handled
+     * tick by tick, so that no pose is skipped, stopping as soon as the system is no longer up.
+     * Every tick of the range has a pose to send, so there is no tick to jump over.
+     *
+     * @param tick The {@link TickBroadcast} that provides the current tick time.
+     * @return The {@link PoseEvent}s of the valid poses, in order (empty if none).
+     */
+    public List<PoseEvent> processTick(TickBroadcast tick) {
+        List<PoseEvent> events = new LinkedList<>();
+        for (int tickTime = tick.getFromTime(); tickTime <= tick.getCurrentTime() && getStatus() == STATUS.UP; tickTime++) {
+            PoseEvent poseE = processTickTime(tickTime);
+            if (poseE != null) {
+                events.add(poseE);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Computes the next tick at which the GPSIMU must be told the time. Poses of the
+     * ticks in between are caught up by {@link #processTick(TickBroadcast)}, so only the
+     * tick at which the system goes down matters. Called by the TimeService in next-event mode,
+     * while the PoseService is idle.
+     *
+     * @param tickTime The last tick sent.
+     * @return The next tick at which the GPSIMU has work, or {@link TickSchedule#NO_WORK}.
+     */
+    public int nextWorkTick(int tickTime) {
+        if (getStatus() != STATUS.UP) {
+            return TickSchedule.NO_WORK;
+        }
+        if ((numOfCameras == 0 && numOfLidars == 0) || PoseList.size() <= tickTime) {
+            return tickTime + 1; // Goes down at the next tick
+        }
+        return TickSchedule.NO_WORK;
+    }
+
+    /**
+     * Processes a single tick.
      * <p>
      * - Sets the current tick in the GPSIMU system.
      * - If a valid pose exists for the current tick, a {@link PoseEvent} is generated and returned.
      * - If no valid pose is found, the GPSIMU status is set to DOWN.
      * </p>
      *
-     * @param tick The {@link TickBroadcast} that provides the current tick time.
+     * @param tickTime The tick to process.
      * @return A {@link PoseEvent} if a valid pose exists, or {@code null} otherwise.
      */
-    public PoseEvent processTick(TickBroadcast tick) {
+    private PoseEvent processTickTime(int tickTime) {
         if (numOfCameras == 0 && numOfLidars == 0) {
             setStatus(STATUS.DOWN);
         }
-        setCurrentTick(tick.getCurrentTime());
+        setCurrentTick(tickTime);
         Pose pose = getPose();
         if (pose != null) {
             // Generate and send a PoseEvent if a valid pose is available.
@@ -1,125 +1,247 @@
 package bgu.spl.mics.application.objects;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * LiDarDataBase is a singleton class responsible for managing LiDAR data.
+ * LiDarDataBase is responsible for managing the LiDAR data of one file.
  * It provides access to cloud point data and other relevant information for tracked objects.
+ * <p>
+ * Every LiDAR worker may read its own file. The loaded files are cached by canonical path:
+ * workers reading the same file share one copy, which is dropped once the last of them
+ * {@linkplain #release() releases} it.
+ * <p>
+ * JSON data is read straight into {@link CloudPointColumns}, without building a list per
+ * cloud point, and indexed by time and object id. Data converted to the binary format of
+ * {@link LiDarDataFile} is memory-mapped instead, and comes with its own indexes.
+ * <p>
+ * After {@link #useWindow(int)}, JSON data is streamed through a {@link LiDarWindow}
+ * instead: only the times the LiDAR workers may still ask for are kept in memory.
  */
 public class LiDarDataBase {
-    // Singleton instance holder
+    // Holder of the loaded files, shared by every worker
     private static class DataBaseHolder{
-        private static LiDarDataBase Instance = new LiDarDataBase(); 
+        private static final ReentrantLock Lock = new ReentrantLock(); // Guards the fields below and the references
+        private static final HashMap<String, LiDarDataBase> Instances = new HashMap<>(); // Loaded files by canonical path
+        private static int WindowLookAhead = 0; // Ticks a window reads ahead, 0 to load the whole data
     }
-    private List<StampedCloudPoints> stampedCloudPoints;
-    private final List<List<StampedCloudPoints>> stampedCloudPointsSort;
+    private final String canonicalPath; // Key of the file in the cache
+    private int references; // Number of workers using the data, guarded by the holder's lock
+    private LiDarEntries entries; // Every entry of the data, in file order
+    private LiDarDataFile mapped; // The mapped binary data, null if the data was read from JSON
+    private BitSet errorTimes; // Times at which lidarErrorInTime is true, built once JSON data is loaded
+    private final ArrayList<HashMap<String, Integer>> entriesByTime; // Entry of every object id, indexed by time
+    private LiDarWindow window; // The streamed JSON data, null if the data is not streamed
 
     /**
-     * Private constructor to enforce the Singleton pattern.
+     * Private constructor, instances are shared through {@link #getInstance(String)}.
+     *
+     * @param canonicalPath The canonical path of the file.
      */
-    private LiDarDataBase() {
-        this.stampedCloudPoints = new LinkedList<StampedCloudPoints>();
-        this.stampedCloudPointsSort = new LinkedList<>();
+    private LiDarDataBase(String canonicalPath) {
+        this.canonicalPath = canonicalPath;
+        this.references = 0;
+        this.entries = new CloudPointColumns();
+        this.mapped = null;
+        this.errorTimes = new BitSet();
+        this.entriesByTime = new ArrayList<>();
+        this.window = null;
     }
 
     /**
-    * Returns the singleton instance of LiDarDataBase.
-    *
-    * @param filePath The path to the LiDAR data file.
-    * @return The singleton instance of LiDarDataBase.
-    */
+     * Streams JSON data through a window of times instead of loading it whole. Applies to
+     * the files loaded after the call. Binary data is mapped either way,
+     * and the operating system already pages it in and out. A window keeps every time a
+     * detection may still ask for, as reported to {@link DetectionProgress}.
+     *
+     * @param lookAhead The number of ticks to read ahead of the latest tick of the workers, at least 1.
+     * @throws IllegalArgumentException if lookAhead is not positive.
+     */
+    public static void useWindow(int lookAhead) {
+        if (lookAhead <= 0) {
+            throw new IllegalArgumentException("Invalid LiDAR window: " + lookAhead);
+        }
+        DataBaseHolder.Lock.lock();
+        try {
+            DataBaseHolder.WindowLookAhead = lookAhead;
+        } finally {
+            DataBaseHolder.Lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the data of a file, loading it unless a worker already uses it. Every call
+     * must be matched by a {@link #release()} once the caller stops reading the data.
+     *
+     * @param filePath The path to the LiDAR data file.
+     * @return The data of the file, shared with every other caller of the same file.
+     */
     public static LiDarDataBase getInstance(String filePath) {
-        LiDarDataBase instance = DataBaseHolder.Instance;
-        if (instance.stampedCloudPoints.isEmpty()) { // First creating of LiDarDataBase
-            instance.loadData(filePath); 
-            if (!instance.stampedCloudPoints.isEmpty()){
-                for(StampedCloudPoints scp: instance.stampedCloudPoints){
-                    // Loading LiDAR data from a JSON file was success
-                    if (instance.stampedCloudPointsSort.size() != 0){
-                        // Creating a list of List<StampedCloudPoints> of sort data:
-                        // StampedCloudPoints with identical time will be in same List<StampedCloudPoints>
-                        List<StampedCloudPoints> lastStamped = instance.stampedCloudPointsSort.get(instance.stampedCloudPointsSort.size()-1);
-                        // There is a list with this time
-                        if (lastStamped.get(0).getTime() == scp.getTime()){
-                            lastStamped.add(scp);
-                        }
-                        // New List<StampedCloudPoints> of this time 
-                        else{
-                            List<StampedCloudPoints> newLastStamped = new LinkedList<>();
-                            newLastStamped.add(scp);
-                            instance.stampedCloudPointsSort.add(newLastStamped);
-                        }
-                    }
-                    else{
-                        List<StampedCloudPoints> newLastStamped = new LinkedList<>();
-                        newLastStamped.add(scp);
-                        instance.stampedCloudPointsSort.add(newLastStamped);
-                    }
-                }
+        String canonicalPath;
+        try {
+            canonicalPath = new File(filePath).getCanonicalPath();
+        } catch (IOException e) {
+            canonicalPath = new File(filePath).getAbsolutePath(); // Fails to load the same way
+        }
+        DataBaseHolder.Lock.lock();
+        try {
+            LiDarDataBase instance = DataBaseHolder.Instances.get(canonicalPath);
+            if (instance == null) { // First worker reading this file
+                instance = new LiDarDataBase(canonicalPath);
+                instance.loadData(filePath, DataBaseHolder.WindowLookAhead);
+                DataBaseHolder.Instances.put(canonicalPath, instance);
+            }
+            instance.references++;
+            return instance;
+        } finally {
+            DataBaseHolder.Lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the data for one caller of {@link #getInstance(String)}. Once every caller
+     * released it, the data is dropped from the cache and from memory.
+     *
+     * @throws IllegalStateException if every caller already released the data.
+     */
+    public void release() {
+        DataBaseHolder.Lock.lock();
+        try {
+            if (references == 0) {
+                throw new IllegalStateException("LiDAR data already released: " + canonicalPath);
+            }
+            references--;
+            if (references == 0) {
+                DataBaseHolder.Instances.remove(canonicalPath);
+                entries = new CloudPointColumns();
+                mapped = null;
+                errorTimes = new BitSet();
+                entriesByTime.clear();
+                window = null; // Its reader stopped when the last worker was done
             }
+        } finally {
+            DataBaseHolder.Lock.unlock();
         }
-        return instance;
     }
 
     /**
-    * Loads LiDAR data from a JSON file at the specified file path and stores it into the `stampedCloudPoints` list.
+     * Fills {@link #entriesByTime}, so that {@link #getCloudPointsData(int, String)}
+     * does not walk the data. If an id appears more than once at the same time, the first
+     * one is kept, as when walking the entries in order.
+     */
+    private void indexCloudPoints() {
+        for (int entry = 0; entry < entries.size(); entry++) {
+            int time = entries.getTime(entry);
+            if (time < 0) {
+                continue; // Never asked for, ticks start at 1
+            }
+            while (entriesByTime.size() <= time) {
+                entriesByTime.add(null);
+            }
+            HashMap<String, Integer> byId = entriesByTime.get(time);
+            if (byId == null) {
+                byId = new HashMap<>();
+                entriesByTime.set(time, byId);
+            }
+            byId.putIfAbsent(entries.getId(entry), entry);
+        }
+    }
+
+    /**
+    * Loads LiDAR data from the file at the specified file path: maps it if it is a
+    * {@link LiDarDataFile}, reads it into columns and indexes it if it is JSON.
     *
-    * @param filePath The path to the JSON file containing the LiDAR data.
+    * @param filePath  The path to the file containing the LiDAR data.
+    * @param lookAhead The number of ticks a window reads ahead, 0 to load the whole JSON data.
      */
-    private void loadData(String filePath) {
-        try (FileReader reader = new FileReader(filePath)) {
-            Gson gson = new Gson();
-            Type listType = new TypeToken<List<StampedCloudPoints>>() {}.getType();
-            stampedCloudPoints = gson.fromJson(reader, listType);
+    private void loadData(String filePath, int lookAhead) {
+        try {
+            if (LiDarDataFile.isLiDarDataFile(filePath)) {
+                mapped = LiDarDataFile.map(filePath);
+                entries = mapped;
+            } else if (lookAhead > 0) {
+                window = new LiDarWindow(filePath, lookAhead, DetectionProgress.getInstance()::oldestNeeded);
+                window.start();
+            } else {
+                CloudPointColumns columns = CloudPointColumns.readJson(filePath);
+                entries = columns;
+                errorTimes = columns.errorTimes();
+                indexCloudPoints();
+            }
         } catch (IOException e) {
             System.err.println("Failed to load LiDAR data: " + e.getMessage());
-            stampedCloudPoints = new LinkedList<StampedCloudPoints>();
+            entries = new CloudPointColumns();
         }
     }
 
     /**
-     * Returns the list of tracked objects.
+     * Returns the list of tracked objects, built from the data on every call
+     * (each cloud point as [x, y]).
      *
-     * @return A list of tracked objects, or null if the data is not loaded.
+     * @return A list of tracked objects, empty if the data is not loaded or is streamed.
      */
     public List<StampedCloudPoints> getStampedCloudPoints() {
+        List<StampedCloudPoints> stampedCloudPoints = new LinkedList<>();
+        for (int entry = 0; entry < entries.size(); entry++) {
+            stampedCloudPoints.add(toStampedCloudPoints(entry));
+        }
         return stampedCloudPoints;
     }
 
      /**
-     * Returns the list of sorted stamped cloud points by time.
+     * Returns the list of sorted stamped cloud points by time, built from the data on every call:
+     * StampedCloudPoints with identical consecutive times are in the same list.
      *
-     * @return A sorted list of stamped cloud points grouped by time.
+     * @return A sorted list of stamped cloud points grouped by time, empty if the data is streamed.
      */
     public List<List<StampedCloudPoints>> getStampedCloudPointsSort() {
+        List<List<StampedCloudPoints>> stampedCloudPointsSort = new LinkedList<>();
+        List<StampedCloudPoints> lastStamped = null;
+        for (int entry = 0; entry < entries.size(); entry++) {
+            if (lastStamped == null || entries.getTime(entry) != entries.getTime(entry - 1)) {
+                lastStamped = new LinkedList<>();
+                stampedCloudPointsSort.add(lastStamped);
+            }
+            lastStamped.add(toStampedCloudPoints(entry));
+        }
         return stampedCloudPointsSort;
     }
 
+    private StampedCloudPoints toStampedCloudPoints(int entry) {
+        CloudPointsView view = entries.getCloudPoints(entry);
+        List<List<Double>> cloudPoints = new ArrayList<>(view.size());
+        for (int i = 0; i < view.size(); i++) {
+            cloudPoints.add(Arrays.asList(view.getX(i), view.getY(i)));
+        }
+        return new StampedCloudPoints(entries.getId(entry), entries.getTime(entry), cloudPoints);
+    }
+
     /**
      * Retrieves the cloud points data for a given time and LiDAR ID.
      *
      * @param time The timestamp of the cloud points.
      * @param id   The unique ID of the LiDAR.
-     * @return A list of cloud points associated with the given time and LiDAR ID, or null if not found.
+     * @return A view of the cloud points associated with the given time and LiDAR ID, or null if not found.
      */
-    public List<List<Double>> getCloudPointsData(int time,String id){
-        for (List<StampedCloudPoints> stmpList: stampedCloudPointsSort){
-            if(stmpList.get(0).getTime() == time){
-                for(StampedCloudPoints stmCp: stmpList){
-                    if (stmCp.getId().equals(id)){
-                        return stmCp.getCloudPoints();
-                    }
-
-                }
-            }
+    public CloudPointsView getCloudPointsData(int time,String id){
+        if (mapped != null) {
+            return mapped.find(time, id);
+        }
+        if (window != null) {
+            return window.find(time, id);
         }
-        return null;
+        if (time < 0 || time >= entriesByTime.size() || entriesByTime.get(time) == null) {
+            return null;
+        }
+        Integer entry = entriesByTime.get(time).get(id);
+        return entry != null ? entries.getCloudPoints(entry) : null;
     }
 
     /**
@@ -129,21 +251,58 @@ public class LiDarDataBase {
      * @return true if there is an error in the data at the specified time, false otherwise.
      */
     public boolean lidarErrorInTime(int time){
-        for (List<StampedCloudPoints> stm: this.stampedCloudPointsSort){
-            if (stm.get(0).getTime() == time){
-                for (StampedCloudPoints stmPoint : stm){
-                    if (stmPoint.getId().equals("ERROR")){ 
-                        return true;
-                    }
-                }
-            }
-            if(stm.get(0).getTime() > time){
-                return false;
-            }
+        if (mapped != null) {
+            return mapped.errorAt(time);
+        }
+        if (window != null) {
+            return window.errorAt(time);
         }
-        return false;
+        return time >= 0 && errorTimes.get(time);
     }
-}
 
+    /**
+     * Finds the next time with an error in the LiDAR data.
+     *
+     * @param time The time to search after.
+     * @return The earliest time after {@code time} for which {@link #lidarErrorInTime(int)}
+     *         is true, or {@link TickSchedule#NO_WORK} if there is none. If the data is
+     *         streamed, the first time not read yet when there is no error before it.
+     */
+    public int nextErrorTime(int time){
+        if (mapped != null) {
+            return mapped.nextErrorTime(time);
+        }
+        if (window != null) {
+            return window.nextErrorTime(time);
+        }
+        int next = time < 0 ? errorTimes.nextSetBit(0) : errorTimes.nextSetBit(time + 1);
+        return next < 0 ? TickSchedule.NO_WORK : next;
+    }
 
+    /**
+     * Reports the progress of a LiDAR worker, so that a streamed window can read ahead and
+     * drop the times no worker may ask for anymore. Does nothing if the data is not streamed.
+     *
+     * @param worker            The name of the worker.
+     * @param oldestPendingTime The detection time of the worker's oldest pending event,
+     *                          or {@code Integer.MAX_VALUE} if none.
+     * @param tick              The worker's current tick.
+     */
+    public void workerProgress(String worker, int oldestPendingTime, int tick) {
+        if (window != null) {
+            window.progress(worker, oldestPendingTime, tick);
+        }
+    }
 
+    /**
+     * Reports that a LiDAR worker stopped. A streamed window stops reading once every worker
+     * stopped. Does nothing if the data is not streamed.
+     *
+     * @param worker The name of the worker.
+     */
+    public void workerDone(String worker) {
+        if (window != null) {
+            window.done(worker);
+        }
+    }
+}
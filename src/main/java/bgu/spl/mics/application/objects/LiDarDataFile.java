@@ -0,0 +1,340 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A LiDAR dataset in a compact binary format, memory-mapped instead of loaded: opening
+ * one reads the header and the id dictionary only, and the cloud points are read from
+ * the page cache when they are asked for, so simulations running on the same machine
+ * share them. Written from the JSON data by {@link #write(CloudPointColumns, String)}
+ * (see the {@code LiDarDataConverter}).
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * header      magic "GRLD", version, entries, points, ids, time slots (latest time + 1),
+ *             error words (7 ints), padding (1 int), position of the x column (1 long)
+ * ids         for every id, its length in bytes and its UTF-8 bytes, padded to 8 bytes
+ * entries     for every entry, in file order: time, id index (-1 for none), first point,
+ *             number of points (4 ints)
+ * time index  for every time slot, the first position of its entries in the by-time
+ *             list, followed by the end of the list (time slots + 1 ints)
+ * by time     the entries with a non-negative time, by time then in file order (ints),
+ *             padded to 8 bytes
+ * errors      the times at which lidarErrorInTime is true, as the words of a bit set (longs)
+ * x           the x coordinate of every point (doubles)
+ * y           the y coordinate of every point (doubles)
+ * </pre>
+ * Coordinates are kept as doubles, so that a simulation gives the same results from the
+ * binary file as from the JSON file. Each column is mapped on its own, so a file holds
+ * up to {@code Integer.MAX_VALUE / 8} points.
+ */
+public final class LiDarDataFile implements LiDarEntries {
+    /**
+     * The first 4 bytes of a LiDAR data file, "GRLD".
+     */
+    public static final int MAGIC = 0x47524C44;
+    /**
+     * The version of the format written.
+     */
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+
+    private final ByteBuffer meta; // Everything before the x column
+    private final DoubleBuffer xs; // The x column
+    private final DoubleBuffer ys; // The y column
+    private final String[] ids; // The id dictionary
+    private final HashMap<String, Integer> idIndex; // Index of every id in the dictionary
+    private final int entries; // Number of entries
+    private final int timeSlots; // Number of times in the time index
+    private final int errorWords; // Number of words of the error bit set
+    private final int entriesPosition; // Position of the entries in meta
+    private final int timeIndexPosition; // Position of the time index in meta
+    private final int byTimePosition; // Position of the by-time list in meta
+    private final int errorsPosition; // Position of the error words in meta
+
+    private LiDarDataFile(FileChannel channel) throws IOException {
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a LiDAR data file of version " + VERSION);
+        }
+        this.entries = header.getInt(8);
+        int points = header.getInt(12);
+        int idCount = header.getInt(16);
+        this.timeSlots = header.getInt(20);
+        this.errorWords = header.getInt(24);
+        long xPosition = header.getLong(32);
+        long columnBytes = 8L * points;
+        if (xPosition > Integer.MAX_VALUE || columnBytes > Integer.MAX_VALUE
+                || channel.size() < xPosition + 2 * columnBytes) {
+            throw new IOException("Corrupted LiDAR data file");
+        }
+        this.meta = channel.map(FileChannel.MapMode.READ_ONLY, 0, xPosition);
+        this.xs = channel.map(FileChannel.MapMode.READ_ONLY, xPosition, columnBytes).asDoubleBuffer();
+        this.ys = channel.map(FileChannel.MapMode.READ_ONLY, xPosition + columnBytes, columnBytes).asDoubleBuffer();
+
+        // The id dictionary is the only part read up front
+        this.ids = new String[idCount];
+        this.idIndex = new HashMap<>();
+        int position = HEADER_BYTES;
+        for (int i = 0; i < idCount; i++) {
+            int length = meta.getInt(position);
+            byte[] bytes = new byte[length];
+            ByteBuffer slice = meta.duplicate();
+            slice.position(position + 4);
+            slice.get(bytes);
+            ids[i] = new String(bytes, StandardCharsets.UTF_8);
+            idIndex.put(ids[i], i);
+            position += 4 + length;
+        }
+        this.entriesPosition = align(position);
+        this.timeIndexPosition = entriesPosition + 16 * entries;
+        this.byTimePosition = timeIndexPosition + 4 * (timeSlots + 1);
+        this.errorsPosition = align(byTimePosition + 4 * meta.getInt(timeIndexPosition + 4 * timeSlots));
+        if (errorsPosition + 8L * errorWords != xPosition) {
+            throw new IOException("Corrupted LiDAR data file");
+        }
+    }
+
+    /**
+     * Maps a LiDAR data file.
+     *
+     * @param filePath The path to the file.
+     * @return The mapped dataset.
+     * @throws IOException if the file cannot be read, or is not a LiDAR data file.
+     */
+    public static LiDarDataFile map(String filePath) throws IOException {
+        // The mappings stay valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            return new LiDarDataFile(channel);
+        }
+    }
+
+    /**
+     * @param filePath The path to a file.
+     * @return true if the file starts like a LiDAR data file, false otherwise (e.g. for JSON).
+     */
+    public static boolean isLiDarDataFile(String filePath) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filePath))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes LiDAR data in the binary format.
+     *
+     * @param columns  The LiDAR data, as read from JSON.
+     * @param filePath The path of the file to write.
+     * @throws IOException if the file cannot be written, or the data has too many points.
+     */
+    public static void write(CloudPointColumns columns, String filePath) throws IOException {
+        int entries = columns.size();
+        if (8L * columns.points() > Integer.MAX_VALUE) {
+            throw new IOException("Too many cloud points for one file: " + columns.points());
+        }
+        // Id dictionary, in order of appearance
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] idOf = new int[entries];
+        int timeSlots = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            String id = columns.getId(entry);
+            if (id == null) {
+                idOf[entry] = -1;
+            } else {
+                Integer index = dictionary.get(id);
+                if (index == null) {
+                    index = dictionary.size();
+                    dictionary.put(id, index);
+                }
+                idOf[entry] = index;
+            }
+            timeSlots = Math.max(timeSlots, columns.getTime(entry) + 1);
+        }
+        // Time index and by-time list, a counting sort that keeps the file order within a time
+        int[] timeIndex = new int[timeSlots + 1];
+        for (int entry = 0; entry < entries; entry++) {
+            if (columns.getTime(entry) >= 0) {
+                timeIndex[columns.getTime(entry) + 1]++;
+            }
+        }
+        for (int time = 0; time < timeSlots; time++) {
+            timeIndex[time + 1] += timeIndex[time];
+        }
+        int[] byTime = new int[timeIndex[timeSlots]];
+        int[] next = new int[timeSlots];
+        System.arraycopy(timeIndex, 0, next, 0, timeSlots);
+        for (int entry = 0; entry < entries; entry++) {
+            if (columns.getTime(entry) >= 0) {
+                byTime[next[columns.getTime(entry)]++] = entry;
+            }
+        }
+        long[] errorWords = columns.errorTimes().toLongArray();
+
+        long idsBytes = 0;
+        for (String id : dictionary.keySet()) {
+            idsBytes += 4 + id.getBytes(StandardCharsets.UTF_8).length;
+        }
+        long entriesPosition = align(HEADER_BYTES + idsBytes);
+        long byTimePosition = entriesPosition + 16L * entries + 4L * (timeSlots + 1);
+        long xPosition = align(byTimePosition + 4L * byTime.length) + 8L * errorWords.length;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries);
+            out.writeInt(columns.points());
+            out.writeInt(dictionary.size());
+            out.writeInt(timeSlots);
+            out.writeInt(errorWords.length);
+            out.writeInt(0);
+            out.writeLong(xPosition);
+            for (String id : dictionary.keySet()) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            pad(out);
+            for (int entry = 0; entry < entries; entry++) {
+                out.writeInt(columns.getTime(entry));
+                out.writeInt(idOf[entry]);
+                out.writeInt(columns.getOffset(entry));
+                out.writeInt(columns.getOffset(entry + 1) - columns.getOffset(entry));
+            }
+            for (int position : timeIndex) {
+                out.writeInt(position);
+            }
+            for (int entry : byTime) {
+                out.writeInt(entry);
+            }
+            pad(out);
+            for (long word : errorWords) {
+                out.writeLong(word);
+            }
+            for (int point = 0; point < columns.points(); point++) {
+                out.writeDouble(columns.getX(point));
+            }
+            for (int point = 0; point < columns.points(); point++) {
+                out.writeDouble(columns.getY(point));
+            }
+        }
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while (out.size() % 8 != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    @Override
+    public int size() {
+        return entries;
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The time the entry's object was tracked.
+     */
+    @Override
+    public int getTime(int entry) {
+        return meta.getInt(entriesPosition + 16 * entry);
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The ID of the entry's object.
+     */
+    @Override
+    public String getId(int entry) {
+        int index = meta.getInt(entriesPosition + 16 * entry + 4);
+        return index < 0 ? null : ids[index];
+    }
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return A view of the entry's cloud points, over the mapped file.
+     */
+    @Override
+    public CloudPointsView getCloudPoints(int entry) {
+        int position = entriesPosition + 16 * entry;
+        return new CloudPointsView(xs, ys, meta.getInt(position + 8), meta.getInt(position + 12));
+    }
+
+    /**
+     * Finds the cloud points of an object at a time. If the id appears more than once at
+     * the same time, the first one in file order is found.
+     *
+     * @param time The time the object was tracked.
+     * @param id   The ID of the object.
+     * @return A view of the cloud points, or null if not found.
+     */
+    public CloudPointsView find(int time, String id) {
+        Integer index = idIndex.get(id);
+        if (time < 0 || time >= timeSlots || index == null) {
+            return null;
+        }
+        int end = meta.getInt(timeIndexPosition + 4 * (time + 1));
+        for (int position = meta.getInt(timeIndexPosition + 4 * time); position < end; position++) {
+            int entry = meta.getInt(byTimePosition + 4 * position);
+            if (meta.getInt(entriesPosition + 16 * entry + 4) == index) {
+                return getCloudPoints(entry);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param time A time.
+     * @return true if a LiDAR worker hits an error at this time.
+     */
+    public boolean errorAt(int time) {
+        if (time < 0 || (time >> 6) >= errorWords) {
+            return false;
+        }
+        return (meta.getLong(errorsPosition + 8 * (time >> 6)) & (1L << (time & 63))) != 0;
+    }
+
+    /**
+     * @param time The time to search after.
+     * @return The earliest time after {@code time} for which {@link #errorAt(int)} is true,
+     *         or {@link TickSchedule#NO_WORK} if there is none.
+     */
+    public int nextErrorTime(int time) {
+        int from = Math.max(0, time + 1);
+        for (int word = from >> 6; word < errorWords; word++) {
+            long bits = meta.getLong(errorsPosition + 8 * word);
+            if (word == from >> 6) {
+                bits &= -1L << (from & 63); // Only the times from 'from' on
+            }
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return TickSchedule.NO_WORK;
+    }
+}
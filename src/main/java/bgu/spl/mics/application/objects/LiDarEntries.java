@@ -0,0 +1,31 @@
+package bgu.spl.mics.application.objects;
+
+/**
+ * The entries of a LiDAR dataset, in file order: an object id tracked at a time, with
+ * its cloud points. Implemented by the in-memory {@link CloudPointColumns} and by the
+ * memory-mapped {@link LiDarDataFile}.
+ */
+interface LiDarEntries {
+    /**
+     * @return The number of entries.
+     */
+    int size();
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The time the entry's object was tracked.
+     */
+    int getTime(int entry);
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return The ID of the entry's object.
+     */
+    String getId(int entry);
+
+    /**
+     * @param entry The index of an entry, in file order.
+     * @return A view of the entry's cloud points.
+     */
+    CloudPointsView getCloudPoints(int entry);
+}
@@ -0,0 +1,322 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+import bgu.spl.mics.ServiceThreads;
+
+/**
+ * Streams the LiDAR data of a JSON file through a sliding window of times, instead of
+ * loading the whole recording.
+ * <p>
+ * A background thread reads the file one time slice at a time, up to {@code lookAhead}
+ * ticks after the latest tick a LiDAR worker reported. A slice is evicted once no worker
+ * can ask for it anymore: every worker reports its current tick and the detection time of
+ * its oldest pending event, and the detections still to come are bounded by a floor the
+ * cameras move (see {@link DetectionProgress}), however far they lag behind the workers.
+ * A lookup ahead of the thread waits for it.
+ * <p>
+ * The entries of the file must be in time order; an entry older than the slice being
+ * read is skipped.
+ */
+final class LiDarWindow {
+    // The entries of one time, read-only once loaded
+    private static final class Slice {
+        private final CloudPointColumns columns; // The entries of the time
+        private final HashMap<String, Integer> entryById; // First entry of every object id
+        private final boolean error; // Whether a worker hits an error at this time
+
+        private Slice(CloudPointColumns columns) {
+            this.columns = columns;
+            this.entryById = new HashMap<>();
+            boolean hasError = false;
+            for (int entry = 0; entry < columns.size(); entry++) {
+                entryById.putIfAbsent(columns.getId(entry), entry);
+                hasError |= "ERROR".equals(columns.getId(entry));
+            }
+            this.error = hasError;
+        }
+    }
+
+    private final String filePath; // The JSON file
+    private final int lookAhead; // Ticks read ahead of the latest tick reported
+    private final IntSupplier detectionFloor; // Oldest detection time a worker may still receive
+    private final ReentrantLock lock; // Guards the fields below, without pinning virtual threads
+    private final Condition changed; // Signaled when the slices, the horizon or the workers change
+    private final TreeMap<Integer, Slice> slices; // Loaded slices by time
+    private final HashMap<String, Integer> oldestNeeded; // Oldest time every worker may still ask for
+    private int horizon; // Latest time to read before waiting
+    private int loadedUpTo; // Every time up to this one is loaded (or absent from the file)
+    private int evictedBelow; // Every time below this one was evicted
+    private boolean finished; // Whether the reading is over (end of file, failure or no worker left)
+
+    /**
+     * Constructs a window over a file. Nothing is read until {@link #start()}.
+     *
+     * @param filePath       The path to the JSON file containing the LiDAR data.
+     * @param lookAhead      The number of ticks to read ahead of the latest tick reported.
+     * @param detectionFloor The oldest detection time a worker may still receive,
+     *                       {@code Integer.MAX_VALUE} if none.
+     */
+    LiDarWindow(String filePath, int lookAhead, IntSupplier detectionFloor) {
+        this.filePath = filePath;
+        this.lookAhead = lookAhead;
+        this.detectionFloor = detectionFloor;
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.slices = new TreeMap<>();
+        this.oldestNeeded = new HashMap<>();
+        this.horizon = lookAhead;
+        this.loadedUpTo = Integer.MIN_VALUE;
+        this.evictedBelow = Integer.MIN_VALUE;
+        this.finished = false;
+    }
+
+    /**
+     * Starts the background thread reading the file.
+     */
+    void start() {
+        Thread prefetcher = ServiceThreads.newThread(this::prefetch, "LiDarPrefetch");
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+    }
+
+    /**
+     * Reads the file slice by slice, waiting whenever the next slice is beyond the horizon.
+     */
+    private void prefetch() {
+        try (JsonReader reader = new JsonReader(new BufferedReader(new FileReader(filePath)))) {
+            reader.beginArray();
+            CloudPointColumns building = new CloudPointColumns();
+            while (reader.hasNext() && !isFinished()) {
+                CloudPointColumns.readEntry(reader, building);
+                int last = building.size() - 1;
+                if (last > 0 && building.getTime(last) != building.getTime(0)) {
+                    // The entry starts the next slice
+                    CloudPointColumns next = new CloudPointColumns();
+                    building.moveLastEntry(next);
+                    publish(building);
+                    building = next;
+                }
+            }
+            if (building.size() > 0) {
+                publish(building);
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            System.err.println("Failed to load LiDAR data: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.lock();
+            try {
+                finished = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a slice to the window once it is within the horizon.
+     */
+    private void publish(CloudPointColumns columns) throws InterruptedException {
+        int time = columns.getTime(0);
+        columns.trim();
+        Slice slice = new Slice(columns); // Indexed before taking the lock
+        lock.lock();
+        try {
+            if (time <= loadedUpTo) {
+                System.err.println("LiDAR data out of time order, skipped time " + time);
+                return;
+            }
+            if (time > horizon) {
+                loadedUpTo = time - 1; // Nothing between the last slice and this one
+                changed.signalAll();
+                while (time > horizon && !finished) {
+                    changed.await();
+                }
+            }
+            if (!finished && time >= evictedBelow) {
+                slices.put(time, slice);
+            }
+            loadedUpTo = time;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isFinished() {
+        lock.lock();
+        try {
+            return finished;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the slice of a time is loaded, or known to be absent. Called with the lock held.
+     *
+     * @return The slice, or null if the file has nothing at this time.
+     */
+    private Slice sliceAt(int time) {
+        if (time > horizon) {
+            horizon = time; // Asked for, so read up to it
+            changed.signalAll();
+        }
+        boolean interrupted = false;
+        while (time > loadedUpTo && !finished) {
+            try {
+                changed.await();
+            } catch (InterruptedException e) {
+                interrupted = true; // Answers first, the caller handles the interruption
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (time < evictedBelow) {
+            System.err.println("LiDAR data of time " + time + " was already evicted");
+        }
+        return slices.get(time);
+    }
+
+    /**
+     * Finds the cloud points of an object at a time, waiting for the time to be read.
+     *
+     * @param time The time the object was tracked.
+     * @param id   The ID of the object.
+     * @return A view of the cloud points, or null if not found.
+     */
+    CloudPointsView find(int time, String id) {
+        lock.lock();
+        try {
+            Slice slice = sliceAt(time);
+            Integer entry = slice != null ? slice.entryById.get(id) : null;
+            return entry != null ? slice.columns.getCloudPoints(entry) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param time A time.
+     * @return true if a LiDAR worker hits an error at this time, waiting for the time to be read.
+     */
+    boolean errorAt(int time) {
+        lock.lock();
+        try {
+            Slice slice = sliceAt(time);
+            return slice != null && slice.error;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the next error among the times read so far, without waiting.
+     *
+     * @param time The time to search after.
+     * @return The earliest error time after {@code time}, or the first time not read yet
+     *         if there is no error before it, or {@link TickSchedule#NO_WORK} if the whole
+     *         file was read and has no error after {@code time}.
+     */
+    int nextErrorTime(int time) {
+        lock.lock();
+        try {
+            for (Map.Entry<Integer, Slice> slice : slices.tailMap(time, false).entrySet()) {
+                if (slice.getValue().error) {
+                    return slice.getKey();
+                }
+            }
+            return finished ? TickSchedule.NO_WORK : Math.max(time, loadedUpTo) + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the progress of a worker: moves the horizon, and evicts the slices no
+     * worker can ask for anymore. The worker itself may still check its current tick for
+     * errors, and track its pending events.
+     *
+     * @param worker            The name of the worker.
+     * @param oldestPendingTime The detection time of the worker's oldest pending event,
+     *                          or {@code Integer.MAX_VALUE} if none.
+     * @param tick              The worker's current tick.
+     */
+    void progress(String worker, int oldestPendingTime, int tick) {
+        lock.lock();
+        try {
+            oldestNeeded.put(worker, Math.min(oldestPendingTime, tick));
+            if (tick + lookAhead > horizon) {
+                horizon = tick + lookAhead;
+                changed.signalAll();
+            }
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that a worker will not ask for anything anymore. Stops reading once no worker is left.
+     *
+     * @param worker The name of the worker.
+     */
+    void done(String worker) {
+        lock.lock();
+        try {
+            if (oldestNeeded.remove(worker) != null && oldestNeeded.isEmpty()) {
+                finished = true;
+                slices.clear();
+                changed.signalAll();
+            } else {
+                evict();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the slices older than every worker's oldest needed time and than the oldest
+     * detection still to come. Called with the lock held.
+     */
+    private void evict() {
+        if (oldestNeeded.isEmpty()) {
+            return;
+        }
+        int oldest = detectionFloor.getAsInt();
+        for (int needed : oldestNeeded.values()) {
+            oldest = Math.min(oldest, needed);
+        }
+        if (oldest != Integer.MAX_VALUE && oldest > evictedBelow) {
+            evictedBelow = oldest;
+            slices.headMap(oldest).clear();
+        }
+    }
+
+    /**
+     * @return The number of slices loaded and not evicted.
+     */
+    int loadedSlices() {
+        lock.lock();
+        try {
+            return slices.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -48,6 +48,7 @@ public class LiDarWorkerTracker {
         this.numOfCameras = numOfCameras;
         this.eventsToProcess = new PriorityQueue<>(Comparator.comparingInt(DetectObjectsEvent::getTimeOfDetectedObjects));
         this.currentTick = 0; // Initialized value of simulation
+        this.liDarDataBase.workerProgress(this.name, Integer.MAX_VALUE, this.currentTick);
     }
 
     /**
@@ -104,10 +105,18 @@ public class LiDarWorkerTracker {
     /**
      * Sets the operational status of the LiDAR worker.
      *
+     * Once the worker stops, it releases its LiDAR data.
+     *
      * @param status The new status of the worker (e.g., UP or DOWN).
      */
     public void setStatus(STATUS status) {
+        boolean stopped = this.status == STATUS.UP && status != STATUS.UP;
         this.status = status;
+        if (stopped) {
+            // Nothing will be asked for anymore, the data is dropped once no worker uses it
+            this.liDarDataBase.workerDone(this.name);
+            this.liDarDataBase.release();
+        }
     }
 
     /**
@@ -141,7 +150,8 @@ public class LiDarWorkerTracker {
      * @param detectedObject The detected object to process.
      * @param time           The time of detection.
      * @param sender         The name of the sender service.
-     * @return A {@link TrackedObject} representing the detected object.
+     * @return A {@link TrackedObject} representing the detected object, or null if the
+     *         database has no cloud points for it.
      * @pre detectedObject != null
      * @pre time >= 0
      * @pre sender != null
@@ -150,45 +160,99 @@ public class LiDarWorkerTracker {
      * @inv The {@link DetectedObject} and its associated cloud point data remain unaltered.
      */
     public TrackedObject detectToTrack(DetectedObject detectedObject, int time, String sender) {
-        List<List<Double>> cloudPointsData = getLiDarDataBase().getCloudPointsData(time, detectedObject.getId());
+        CloudPointsView cloudPointsData = getLiDarDataBase().getCloudPointsData(time, detectedObject.getId());
+        if (cloudPointsData == null) {
+            return null;
+        }
         List<CloudPoint> coordinates = new LinkedList<>();
-        for (List<Double> cp : cloudPointsData) {
-            CloudPoint point = new CloudPoint(cp.get(0), cp.get(1));
+        for (int i = 0; i < cloudPointsData.size(); i++) {
+            CloudPoint point = new CloudPoint(cloudPointsData.getX(i), cloudPointsData.getY(i));
             coordinates.add(point);
         }
         return new TrackedObject(time, detectedObject.getId(), detectedObject.getDescription(), coordinates);
     }
 
     /**
-     * Processes a single tick broadcast.
-     * Updates the current simulation tick, checks for LiDAR errors, and processes
-     * detection events if their time is ready. Generates a {@link TrackedObjectsEvent}
-     * if tracked objects are available to send.
+     * Processes a tick broadcast.
+     * A coalesced broadcast is handled from {@link TickBroadcast#getFromTime()} up to the
+     * current time, jumping from one tick with work to the next (see {@link #nextWorkTick(int)}),
+     * and stopping as soon as the worker is no longer up. The objects tracked along the way
+     * are sent together in a single {@link TrackedObjectsEvent}.
      *
      * @param tick The {@link TickBroadcast} containing the current simulation time.
-     * @return A {@link TrackedObjectsEvent} containing processed tracked objects, or null if none are ready or error occurred.
+     * @return A {@link TrackedObjectsEvent} containing processed tracked objects, or null if none are ready.
      * @pre tick != null
-     * @pre tick.getCurrentTime() > 0
+     * @pre tick.getFromTime() > 0
+     * @post For every tick in the broadcast's range, see {@link #processTickTime(int)}
+     * @inv The {@link LiDarDataBase} remains unaltered.
+     */
+    public TrackedObjectsEvent processTick(TickBroadcast tick) {
+        List<TrackedObject> trackedObjects = new LinkedList<>();
+        int tickTime = tick.getFromTime();
+        while (tickTime <= tick.getCurrentTime() && getStatus() == STATUS.UP) {
+            trackedObjects.addAll(processTickTime(tickTime));
+            tickTime = Math.max(tickTime + 1, nextWorkTick(tickTime));
+        }
+        if (getStatus() == STATUS.UP && currentTick < tick.getCurrentTime()) {
+            // Nothing happened on the ticks jumped over, the worker is at the end of the range
+            currentTick = tick.getCurrentTime();
+            int oldestPending = eventsToProcess.isEmpty() ? Integer.MAX_VALUE : eventsToProcess.peek().getTimeOfDetectedObjects();
+            getLiDarDataBase().workerProgress(getName(), oldestPending, currentTick);
+        }
+        if (!trackedObjects.isEmpty()) {
+            return new TrackedObjectsEvent(trackedObjects, getName());
+        }
+        return null;
+    }
+
+    /**
+     * Computes the next tick at which the worker has work: releasing its oldest waiting
+     * detection, hitting an error in the database, or going down once no camera is left.
+     * Called by the TimeService in next-event mode, while the LiDarService is idle.
+     *
+     * @param tickTime The last tick sent.
+     * @return The next tick at which the worker has work, or {@link TickSchedule#NO_WORK}.
+     */
+    public int nextWorkTick(int tickTime) {
+        if (getStatus() != STATUS.UP) {
+            return TickSchedule.NO_WORK;
+        }
+        if (eventsToProcess.isEmpty() && this.numOfCameras == 0) {
+            return tickTime + 1; // Goes down at the next tick
+        }
+        int next = getLiDarDataBase().nextErrorTime(tickTime);
+        if (!eventsToProcess.isEmpty()) {
+            next = Math.min(next, Math.max(tickTime + 1, eventsToProcess.peek().getTimeOfDetectedObjects() + this.frequency));
+        }
+        return next;
+    }
+
+    /**
+     * Processes a single tick.
+     * Updates the current simulation tick, checks for LiDAR errors, and processes
+     * detection events if their time is ready.
+     *
+     * @param tickTime The tick to process.
+     * @return The tracked objects ready to be sent at this tick (empty if none or an error occurred).
      * @post If there are {@link TrackedObject} ready to be sent at current tick {@link lastTrackObjectList} is updated to be 
      * the list of ones that are ready to be sent and {@link StatisticalFolder} will be updated
      * @post {@link eventToProcess} will contain only {@link TrackedObject} with time of detection + {@link frequency} < tick
      * @post If an error occurs in tick time at the liDarDataBase and {@link status} will be ERROR and {@link ErrorCoordinator} will be updated
      * @post If there are no events to process and no cameras are active and {@link status} will be DOWN
-     * @inv The {@link LiDarDataBase} remains unaltered.
      */
-    public TrackedObjectsEvent processTick(TickBroadcast tick) {
-        this.currentTick = tick.getCurrentTime();
+    private List<TrackedObject> processTickTime(int tickTime) {
+        this.currentTick = tickTime;
+        List<TrackedObject> trackedObjects = new LinkedList<>();
         // lidarErrorInTime will return true if there is an error in the relevant lidar data base at tick time
         if (getLiDarDataBase().lidarErrorInTime(currentTick)) {
             this.setStatus(STATUS.ERROR);
             ErrorCoordinator.getInstance().setLastFramesLidars(getName(), getLastTrackedObjectList());
             ErrorCoordinator.getInstance().setCrashed("LiDarWorkerTracker " + String.valueOf(this.id), currentTick, "LiDar Disconnection");
-            return null;
+            return trackedObjects;
         }
         if (eventsToProcess.isEmpty() && this.numOfCameras == 0) {
             setStatus(STATUS.DOWN);
         } else {
-            List<TrackedObject> trackedObjects = new LinkedList<>();
             while (!eventsToProcess.isEmpty() && eventsToProcess.peek().getTimeOfDetectedObjects() + this.frequency <= currentTick) {
                 DetectObjectsEvent dob = eventsToProcess.poll();
                 processDetectedObjects(dob, trackedObjects);
@@ -196,10 +260,11 @@ public class LiDarWorkerTracker {
             // We can send trackedObject event 
             if (!trackedObjects.isEmpty()) {
                 StatisticalFolder.getInstance().incrementTrackedObjects(trackedObjects.size());
-                return new TrackedObjectsEvent(trackedObjects, getName());
             }
+            int oldestPending = eventsToProcess.isEmpty() ? Integer.MAX_VALUE : eventsToProcess.peek().getTimeOfDetectedObjects();
+            getLiDarDataBase().workerProgress(getName(), oldestPending, currentTick);
         }
-        return null;
+        return trackedObjects;
     }
 
     /**
@@ -214,8 +279,14 @@ public class LiDarWorkerTracker {
         List<DetectedObject> detectedObjects = stampedDetections.getDetectedObjects();
         int time = stampedDetections.getTime();
         for (DetectedObject doe : detectedObjects) {
-            trackedObjectsToSend.add(detectToTrack(doe, time, getName()));
+            TrackedObject tracked = detectToTrack(doe, time, getName());
+            if (tracked != null) {
+                trackedObjectsToSend.add(tracked);
+            } else {
+                System.err.println(getName() + " has no cloud points for " + doe.getId() + " at time " + time);
+            }
         }
+        DetectionProgress.getInstance().detectionTracked(time);
         // Set LastTrackedObjectList to contain the newest TrackedObject List
         setLastTrackedObjectList(trackedObjectsToSend);
     }
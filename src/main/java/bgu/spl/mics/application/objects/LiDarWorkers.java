@@ -11,6 +11,7 @@ public class LiDarWorkers {
 
     private final List<LidarConfigurations> LidarConfigurations;
     private final String lidars_data_path;
+    private final Integer lidar_window; // Optional number of ticks of LiDAR data read ahead, all of them when missing
 
     /**
      * Constructor to initialize with a list of LiDARs and a data path.
@@ -19,8 +20,20 @@ public class LiDarWorkers {
      * @param lidarDataPath The path or description of LiDAR data.
      */
     public LiDarWorkers(List<LidarConfigurations> LidarConfigurations, String lidarDataPath) {
+        this(LidarConfigurations, lidarDataPath, null);
+    }
+
+    /**
+     * Constructor to initialize with a list of LiDARs, a data path and the LiDAR window.
+     *
+     * @param lidars        The list of LiDARs.
+     * @param lidarDataPath The path or description of LiDAR data.
+     * @param lidarWindow   The number of ticks of LiDAR data read ahead, or null to load it all.
+     */
+    public LiDarWorkers(List<LidarConfigurations> LidarConfigurations, String lidarDataPath, Integer lidarWindow) {
         this.LidarConfigurations = LidarConfigurations; 
         this.lidars_data_path = lidarDataPath;
+        this.lidar_window = lidarWindow;
     }
 
     /**
@@ -31,17 +44,26 @@ public class LiDarWorkers {
     }
 
     /**
-     * @return The path or description of the LiDAR data.
+     * @return The path or description of the LiDAR data, read by every LiDAR without data of its own.
      */
     public String getLidarDataPath() {
         return lidars_data_path;
     }
 
+    /**
+     * @return The number of ticks of LiDAR data read ahead of the current tick when
+     *         streaming the LiDAR data, or 0 to load the whole file up front.
+     */
+    public int getLidarWindow() {
+        return lidar_window != null ? lidar_window : 0;
+    }
+
     @Override
     public String toString() {
         return "Lidars{" +
                 "lidars=" + LidarConfigurations +
                 ", lidarDataPath='" + lidars_data_path + '\'' +
+                ", lidarWindow=" + lidar_window +
                 '}';
     }
     
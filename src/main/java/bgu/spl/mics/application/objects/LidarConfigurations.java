@@ -9,6 +9,7 @@ public class LidarConfigurations {
     
     private final int id;
     private final int frequency;
+    private final String lidars_data_path; // Optional LiDAR data of this LiDAR only, the shared data when missing
 
     /**
      * Parameterized constructor to initialize LiDAR data.
@@ -17,8 +18,20 @@ public class LidarConfigurations {
      * @param frequency The frequency of data capture or processing.
      */
     public LidarConfigurations(int id, int frequency) {
+        this(id, frequency, null);
+    }
+
+    /**
+     * Parameterized constructor to initialize LiDAR data with its own data file.
+     *
+     * @param id            The unique identifier for the LiDAR.
+     * @param frequency     The frequency of data capture or processing.
+     * @param lidarDataPath The path of the LiDAR's own data, or null to use the shared data.
+     */
+    public LidarConfigurations(int id, int frequency, String lidarDataPath) {
         this.id = id;
         this.frequency = frequency;
+        this.lidars_data_path = lidarDataPath;
     }
 
     /**
@@ -35,11 +48,20 @@ public class LidarConfigurations {
         return frequency;
     }
 
+    /**
+     * @return The path of the LiDAR's own data, or null if it uses the data shared by
+     *         every LiDAR.
+     */
+    public String getLidarDataPath() {
+        return lidars_data_path;
+    }
+
     @Override
     public String toString() {
         return "LidarData{" +
                 "id=" + id +
                 ", frequency=" + frequency +
+                ", lidarDataPath='" + lidars_data_path + '\'' +
                 '}';
     }
 }
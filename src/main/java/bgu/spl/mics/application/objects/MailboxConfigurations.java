@@ -0,0 +1,58 @@
+package bgu.spl.mics.application.objects;
+
+import bgu.spl.mics.OverflowPolicy;
+
+/**
+ * MailboxConfigurations represents the message queue limit of a single microservice,
+ * identified by its name (e.g. "FusionSlam", "Camera1", "LiDarWorkerTracker1").
+ * Used for JSON reading
+ */
+public class MailboxConfigurations {
+
+    private final String service;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    /**
+     * Parameterized constructor to initialize the mailbox limit.
+     *
+     * @param service  The name of the microservice.
+     * @param capacity The maximal number of events in its message queue.
+     * @param policy   What to do with an event sent to a full queue.
+     */
+    public MailboxConfigurations(String service, int capacity, OverflowPolicy policy) {
+        this.service = service;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * @return The name of the microservice.
+     */
+    public String getService() {
+        return service;
+    }
+
+    /**
+     * @return The maximal number of events in the message queue.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The overflow policy, {@link OverflowPolicy#BLOCK} if none was given.
+     */
+    public OverflowPolicy getPolicy() {
+        return policy != null ? policy : OverflowPolicy.BLOCK;
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxConfigurations{" +
+                "service='" + service + '\'' +
+                ", capacity=" + capacity +
+                ", policy=" + policy +
+                '}';
+    }
+}
@@ -0,0 +1,48 @@
+package bgu.spl.mics.application.objects;
+
+import bgu.spl.mics.RoutingStrategy;
+
+/**
+ * RoutingConfigurations represents how the events of a single type are routed between
+ * their subscribers. The event type is given by its simple class name
+ * (e.g. "DetectObjectsEvent") or by its fully qualified name.
+ * Used for JSON reading
+ */
+public class RoutingConfigurations {
+
+    private final String event;
+    private final RoutingStrategy strategy;
+
+    /**
+     * Parameterized constructor to initialize the routing configuration.
+     *
+     * @param event    The name of the event type.
+     * @param strategy How the subscriber receiving each event is picked.
+     */
+    public RoutingConfigurations(String event, RoutingStrategy strategy) {
+        this.event = event;
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return The name of the event type.
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * @return The routing strategy, {@link RoutingStrategy#ROUND_ROBIN} if none was given.
+     */
+    public RoutingStrategy getStrategy() {
+        return strategy != null ? strategy : RoutingStrategy.ROUND_ROBIN;
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingConfigurations{" +
+                "event='" + event + '\'' +
+                ", strategy=" + strategy +
+                '}';
+    }
+}
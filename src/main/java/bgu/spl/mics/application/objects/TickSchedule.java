@@ -0,0 +1,63 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Tells the TimeService, in next-event mode, the next tick at which any sensor has work.
+ * <p>
+ * Every sensor registers a function giving its next work tick after a given tick
+ * (a detection to take, data to release, an error to hit, or the tick it goes down at).
+ * The ticks in between need no broadcast of their own: the next {@link
+ * bgu.spl.mics.application.messages.TickBroadcast} covers them all. The functions read
+ * the sensors' state without locking, so they are only called once every service is idle.
+ * Implements the Singleton pattern.
+ */
+public class TickSchedule {
+    /**
+     * Returned by a sensor with nothing left to do at any future tick.
+     */
+    public static final int NO_WORK = Integer.MAX_VALUE;
+
+    // Singleton instance holder
+    private static class TickScheduleHolder {
+        private static final TickSchedule instance = new TickSchedule();
+    }
+
+    private final ConcurrentHashMap<String, IntUnaryOperator> sensors; // Next work tick after a given tick, by sensor name
+
+    private TickSchedule() {
+        this.sensors = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The TickSchedule singleton instance.
+     */
+    public static TickSchedule getInstance() {
+        return TickScheduleHolder.instance;
+    }
+
+    /**
+     * Registers a sensor, replacing any sensor registered under the same name.
+     *
+     * @param sensorName   The name of the sensor.
+     * @param nextWorkTick Gives the sensor's next work tick after the tick it is applied to,
+     *                     or {@link #NO_WORK}.
+     */
+    public void register(String sensorName, IntUnaryOperator nextWorkTick) {
+        sensors.put(sensorName, nextWorkTick);
+    }
+
+    /**
+     * @param tickTime The last tick sent.
+     * @return The earliest tick after {@code tickTime} at which a sensor has work,
+     *         or {@link #NO_WORK} if none has.
+     */
+    public int nextWorkTick(int tickTime) {
+        int next = NO_WORK;
+        for (IntUnaryOperator sensor : sensors.values()) {
+            next = Math.min(next, Math.max(tickTime + 1, sensor.applyAsInt(tickTime)));
+        }
+        return next;
+    }
+}
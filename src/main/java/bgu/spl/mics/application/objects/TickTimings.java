@@ -0,0 +1,104 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how closely the TimeService kept its tick schedule, as running aggregates
+ * so that recording costs no memory per tick.
+ * <p>
+ * For every tick, the jitter is how late the tick was sent compared to its deadline,
+ * and the overrun is how late the service already was for the next tick's deadline
+ * once the tick was sent (0 if it was in time). Written by the TimeService only;
+ * meant to be read once it has terminated.
+ */
+public class TickTimings {
+    private final long periodNanos; // The scheduled time between two ticks
+    private final int maxTicks; // The maximal number of ticks to record
+    private int ticks; // Number of ticks recorded
+    private long jitterSum; // Sum of the jitter of every tick
+    private long maxJitter; // Largest jitter of a tick
+    private int overruns; // Number of ticks with an overrun
+    private long maxOverrun; // Largest overrun of a tick
+
+    /**
+     * Constructs an empty record.
+     *
+     * @param periodNanos The scheduled time between two ticks, in nanoseconds.
+     * @param maxTicks    The maximal number of ticks to record.
+     */
+    public TickTimings(long periodNanos, int maxTicks) {
+        this.periodNanos = periodNanos;
+        this.maxTicks = Math.max(0, maxTicks);
+        this.ticks = 0;
+        this.jitterSum = 0;
+        this.maxJitter = 0;
+        this.overruns = 0;
+        this.maxOverrun = 0;
+    }
+
+    /**
+     * Records the timing of the next tick.
+     *
+     * @param jitter  How late the tick was sent, in nanoseconds.
+     * @param overrun How late the service was for the next deadline once the tick was sent, in nanoseconds.
+     */
+    public void record(long jitter, long overrun) {
+        if (ticks < maxTicks) {
+            ticks++;
+            jitterSum += jitter;
+            maxJitter = Math.max(maxJitter, jitter);
+            if (overrun > 0) {
+                overruns++;
+                maxOverrun = Math.max(maxOverrun, overrun);
+            }
+        }
+    }
+
+    /**
+     * @return The number of ticks recorded.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return The mean jitter of the recorded ticks, in nanoseconds, 0 if none was recorded.
+     */
+    public long getMeanJitter() {
+        return ticks == 0 ? 0 : jitterSum / ticks;
+    }
+
+    /**
+     * @return The largest jitter of a recorded tick, in nanoseconds.
+     */
+    public long getMaxJitter() {
+        return maxJitter;
+    }
+
+    /**
+     * @return The number of ticks whose sending ran past the next tick's deadline.
+     */
+    public int getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return The largest overrun of a recorded tick, in nanoseconds.
+     */
+    public long getMaxOverrun() {
+        return maxOverrun;
+    }
+
+    /**
+     * @return A one-line summary: tick period, mean and maximal jitter, overruns.
+     */
+    @Override
+    public String toString() {
+        return String.format("Tick timing: %d ticks every %.3f ms, jitter mean %.3f ms max %.3f ms, %d overruns (max %.3f ms)",
+                ticks, millis(periodNanos), millis(getMeanJitter()), millis(maxJitter), overruns, millis(maxOverrun));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
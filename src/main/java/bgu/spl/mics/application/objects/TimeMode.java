@@ -0,0 +1,21 @@
+package bgu.spl.mics.application.objects;
+
+/**
+ * How the TimeService advances the simulation clock.
+ */
+public enum TimeMode {
+    /**
+     * A tick every {@code TickTime} seconds of wall time.
+     */
+    REAL_TIME,
+    /**
+     * The next tick as soon as every service has handled the current one, and every
+     * message sent because of it (but never later than {@code TickTime} seconds).
+     */
+    VIRTUAL_TIME,
+    /**
+     * Virtual time, skipping the ticks at which no sensor has work (see {@link TickSchedule}):
+     * a single tick broadcast covers them, and they still count in the system runtime.
+     */
+    NEXT_EVENT
+}
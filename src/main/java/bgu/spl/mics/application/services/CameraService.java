@@ -10,6 +10,7 @@ import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.objects.Camera;
 import bgu.spl.mics.application.objects.ErrorCoordinator;
 import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.TickSchedule;
 
 /**
  * CameraService is responsible for processing data from the camera and
@@ -29,6 +30,7 @@ public class CameraService extends MicroService {
     public CameraService(Camera camera) {
         super(camera.getName());
         this.camera = camera;
+        setCoalescing(true); // Catches up on missed ticks in a single callback
     }
 
     /**
@@ -44,9 +46,8 @@ public class CameraService extends MicroService {
         subscribeBroadcast(TickBroadcast.class, tick -> {
             if (camera.getStatus() == STATUS.UP) {
                 // Process only if the camera is active
-                DetectObjectsEvent doe = camera.processTick(tick);
-                if (doe != null){
-                    sendEvent(doe); 
+                for (DetectObjectsEvent doe : camera.processTick(tick)) {
+                    sendEvent(doe);
                 }
             }
             if (camera.getStatus() == STATUS.ERROR){
@@ -76,5 +77,8 @@ public class CameraService extends MicroService {
             ErrorCoordinator.getInstance().setLastFramesCameras(getName(), camera.getLastDetectedObjects());
             terminate();
         });
+
+        // Tells the TimeService when the camera needs its next tick, in next-event mode
+        TickSchedule.getInstance().register(getName(), camera::nextWorkTick);
     }
 }
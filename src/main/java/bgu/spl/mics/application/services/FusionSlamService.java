@@ -27,6 +27,7 @@ public class FusionSlamService extends MicroService {
         this.fusionSlam = fusionSlam;
         this.isTimeServiceTerminated = false;
         this.error = false;
+        setBatchMode(true); // Tracked objects and poses arrive in bursts from every sensor
     }
 
     /**
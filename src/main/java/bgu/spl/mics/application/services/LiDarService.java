@@ -24,6 +24,7 @@ public class LiDarService extends MicroService {
     public LiDarService(LiDarWorkerTracker LiDarWorkerTracker) {
         super(LiDarWorkerTracker.getName());
         this.lidarWorker = LiDarWorkerTracker;
+        setCoalescing(true); // Catches up on missed ticks in a single callback
     }
 
     /**
@@ -39,8 +40,11 @@ public class LiDarService extends MicroService {
             if (lidarWorker.getStatus() == STATUS.UP){
                 TrackedObjectsEvent tracked = lidarWorker.processDetectedEvent(ev);
                 if (tracked != null)
-                    sendEvent(tracked);
+                    sendEventNoReply(tracked);
             }
+            // Acknowledges the detection, so the camera's Future does not stay pending
+            complete(ev, lidarWorker.getStatus() == STATUS.UP);
+            setBacklog(lidarWorker.getEventToProcess().size()); // Lets the bus route by load
         });
 
         // Subscribe to TickBroadcast
@@ -49,8 +53,9 @@ public class LiDarService extends MicroService {
                 // Process only if the camera is active
                 TrackedObjectsEvent toe = lidarWorker.processTick(tick);
                 if (toe != null){
-                    sendEvent(toe); 
+                    sendEventNoReply(toe);
                 }
+                setBacklog(lidarWorker.getEventToProcess().size());
             }
             if (lidarWorker.getStatus() == STATUS.ERROR){
                 sendBroadcast(new CrashedBroadcast(getName()));
@@ -82,5 +87,8 @@ public class LiDarService extends MicroService {
             ErrorCoordinator.getInstance().setLastFramesLidars(getName(),lidarWorker.getLastTrackedObjectList());
             terminate();
         });
+
+        // Tells the TimeService when the worker needs its next tick, in next-event mode
+        TickSchedule.getInstance().register(getName(), lidarWorker::nextWorkTick);
     }
 }
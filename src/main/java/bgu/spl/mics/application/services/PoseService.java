@@ -8,6 +8,7 @@ import bgu.spl.mics.application.messages.TerminatedBroadcast;
 
 import bgu.spl.mics.application.objects.GPSIMU;
 import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.TickSchedule;
 
 /**
  * PoseService is responsible for maintaining the robot's current pose (position and orientation)
@@ -37,9 +38,8 @@ public class PoseService extends MicroService {
         subscribeBroadcast(TickBroadcast.class, tick -> {
             // Process tick if the GPSIMU system is up.
             if (gpsimu.getStatus() == STATUS.UP) {
-                PoseEvent poseE = gpsimu.processTick(tick);
-                if (poseE != null){
-                    sendEvent(poseE);
+                for (PoseEvent poseE : gpsimu.processTick(tick)) {
+                    sendEventNoReply(poseE);
                 }
             }
             if (gpsimu.getStatus() == STATUS.DOWN){
@@ -72,5 +72,8 @@ public class PoseService extends MicroService {
                 terminate();
             }
         });
+
+        // Tells the TimeService when the GPSIMU needs its next tick, in next-event mode
+        TickSchedule.getInstance().register(getName(), gpsimu::nextWorkTick);
     }
 }
@@ -1,5 +1,8 @@
 package bgu.spl.mics.application.services;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 import bgu.spl.mics.MicroService;
 
 import bgu.spl.mics.application.messages.TerminatedBroadcast;
@@ -7,15 +10,25 @@ import bgu.spl.mics.application.messages.TickBroadcast;
 
 import bgu.spl.mics.application.objects.FusionSlam;
 import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TickSchedule;
+import bgu.spl.mics.application.objects.TickTimings;
+import bgu.spl.mics.application.objects.TimeMode;
 
 /**
  * TimeService acts as the global timer for the system, broadcasting
  * TickBroadcast messages
  * at regular intervals and controlling the simulation's duration.
+ * <p>
+ * In real time, tick {@code n} is due {@code n - 1} tick periods after the first one,
+ * measured with {@link System#nanoTime()}: the time spent sending a tick does not
+ * delay the following ones, and a late tick is sent right away to catch up (like
+ * {@link java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate}).
  */
 public class TimeService extends MicroService {
-    private final int tickTime; // Duration of each tick in seconds
+    private final long tickNanos; // Duration of each tick in nanoseconds
     private final int duration; // Total number of ticks before termination
+    private final TimeMode timeMode; // Whether ticks follow the wall clock or the services' progress
+    private final TickTimings timings; // Jitter and overrun aggregates of the real-time ticks
     private int currentTick; // Current tick count
 
     /**
@@ -25,12 +38,35 @@ public class TimeService extends MicroService {
      * @param Duration The total number of ticks before the service terminates.
      */
     public TimeService(int TickTime, int Duration) {
+        this(TickTime, TimeUnit.SECONDS, Duration, TimeMode.REAL_TIME);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param tickTime The duration of each tick (in virtual time, the longest wait for a tick).
+     * @param tickUnit The unit of {@code tickTime}, e.g. {@link TimeUnit#MILLISECONDS} for 100 Hz ticks of 10.
+     * @param Duration The total number of ticks before the service terminates.
+     * @param mode     How the clock advances. {@link TimeMode#VIRTUAL_TIME} and
+     *                 {@link TimeMode#NEXT_EVENT} require quiescence tracking on the message bus.
+     */
+    public TimeService(int TickTime, TimeUnit tickUnit, int Duration, TimeMode mode) {
         super("TimeService");
-        this.tickTime = TickTime;
+        this.tickNanos = tickUnit.toNanos(TickTime);
         this.duration = Duration;
+        this.timeMode = mode;
+        this.timings = new TickTimings(tickNanos, Duration);
         this.currentTick = 0;
     }
 
+    /**
+     * @return The timing of the real-time ticks sent so far. Meant to be read once the service terminated
+     *         (the runner reports it with {@code -Dgurion.tickTimings=true}).
+     */
+    public TickTimings getTickTimings() {
+        return timings;
+    }
+
     /**
      * Initializes the TimeService.
      * - Starts a new thread to simulate the ticking process.
@@ -39,16 +75,30 @@ public class TimeService extends MicroService {
      */
     @Override
     protected void initialize() {
+            long deadline = System.nanoTime(); // When the next tick is due
+            boolean settled = false; // Whether the sensors are idle and may be asked for their next work tick
 
             // Continue running until the specified duration is reached or there are no more active microservices
             while (FusionSlam.getInstance().getFinished() == false && currentTick < duration) {
                 try{
                     // Increment the tick counter and broadcast TickBroadcast
-                    currentTick++;
-                    StatisticalFolder.getInstance().incrementSystemRunTime(1);
-                    sendBroadcast(new TickBroadcast(currentTick));
-                    // Sleep for tickTime duration (convert to milliseconds)
-                    Thread.sleep(tickTime * 1000);
+                    int fromTick = currentTick + 1;
+                    // In next-event mode, jumps over the ticks at which no sensor has work
+                    currentTick = settled ? Math.min(duration, TickSchedule.getInstance().nextWorkTick(currentTick)) : fromTick;
+                    long sentAt = System.nanoTime();
+                    StatisticalFolder.getInstance().incrementSystemRunTime(currentTick - fromTick + 1);
+                    sendBroadcast(new TickBroadcast(fromTick, currentTick));
+                    if (timeMode != TimeMode.REAL_TIME) {
+                        // Next tick once the services are done with this one, never slower than real time
+                        settled = awaitQuiescence(tickNanos, TimeUnit.NANOSECONDS) && timeMode == TimeMode.NEXT_EVENT;
+                    }
+                    else {
+                        long jitter = Math.max(0, sentAt - deadline);
+                        deadline += tickNanos;
+                        timings.record(jitter, Math.max(0, System.nanoTime() - deadline));
+                        // Sleep until the next tick is due
+                        sleepUntil(deadline);
+                    }
                 }
                  catch (InterruptedException e) {
                     // Handle interruption of the thread
@@ -56,9 +106,25 @@ public class TimeService extends MicroService {
                     Thread.currentThread().interrupt(); // Restore interrupt status
                 }
         }
-
         // After the duration or if no microservices are left, send the termination broadcast
         sendBroadcast(new TerminatedBroadcast(getName()));
         terminate();
     }
+
+    /**
+     * Sleeps until {@code deadline}, with the precision of {@link LockSupport#parkNanos(long)}
+     * rather than whole milliseconds.
+     *
+     * @param deadline A {@link System#nanoTime()} value.
+     * @throws InterruptedException if interrupted while sleeping.
+     */
+    private void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActorSchedulerTest {
+    private static class PingEvent extends AbstractEvent<Integer> {
+        private final int value;
+
+        PingEvent(int value) {
+            this.value = value;
+        }
+    }
+
+    private static class StopBroadcast implements Broadcast {
+    }
+
+    private static class Echo extends MicroService {
+        private final CountDownLatch initialized;
+        private final Set<String> threads;
+
+        Echo(String name, CountDownLatch initialized, Set<String> threads) {
+            super(name);
+            this.initialized = initialized;
+            this.threads = threads;
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeEvent(PingEvent.class, ping -> {
+                threads.add(Thread.currentThread().getName());
+                complete(ping, ping.value + 1);
+            });
+            subscribeBroadcast(StopBroadcast.class, stop -> terminate());
+            initialized.countDown();
+        }
+    }
+
+    @Test
+    void testActorsShareThePool() throws InterruptedException {
+        ActorScheduler actors = new ActorScheduler(2, 4);
+        CountDownLatch initialized = new CountDownLatch(5);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 5; i++) {
+            actors.start(new Echo("Echo" + i, initialized, threads));
+        }
+        actors.close();
+        assertTrue(initialized.await(5, TimeUnit.SECONDS));
+
+        MessageBusImpl bus = MessageBusImpl.getInstance();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(bus.sendEvent(new PingEvent(i)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("Actor-")));
+        assertTrue(threads.size() <= 2);
+
+        bus.sendBroadcast(new StopBroadcast());
+        assertTrue(actors.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testInvalidPoolSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ActorScheduler(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ActorScheduler(1, 0));
+    }
+}
@@ -0,0 +1,133 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.services.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedMailboxTest {
+    private EnumMap<OverflowPolicy, LongAdder> counters;
+    private List<Message> dropped;
+    private PoseEvent event1;
+    private PoseEvent event2;
+    private PoseEvent event3;
+
+    @BeforeEach
+    void setUp() {
+        counters = new EnumMap<>(OverflowPolicy.class);
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            counters.put(policy, new LongAdder());
+        }
+        dropped = new LinkedList<>();
+        event1 = new PoseEvent(new Pose(1, 0, 0, 0));
+        event2 = new PoseEvent(new Pose(2, 0, 0, 0));
+        event3 = new PoseEvent(new Pose(3, 0, 0, 0));
+    }
+
+    private BoundedMailbox mailbox(OverflowPolicy policy) {
+        return new BoundedMailbox(2, policy, dropped::add, counters);
+    }
+
+    @Test
+    void testDropNewest() {
+        BoundedMailbox mailbox = mailbox(OverflowPolicy.DROP_NEWEST);
+        assertTrue(mailbox.offer(event1));
+        assertTrue(mailbox.offer(event2));
+        assertFalse(mailbox.offer(event3));
+        assertEquals(1, dropped.size());
+        assertEquals(event3, dropped.get(0));
+        assertEquals(1, counters.get(OverflowPolicy.DROP_NEWEST).sum());
+        assertEquals(1, mailbox.getOverflowCount());
+
+        // Broadcasts are always accepted
+        TickBroadcast tick = new TickBroadcast(1);
+        assertTrue(mailbox.offer(tick));
+        assertEquals(3, mailbox.size());
+        assertEquals(event1, mailbox.poll());
+        assertEquals(event2, mailbox.poll());
+        assertEquals(tick, mailbox.poll());
+    }
+
+    @Test
+    void testDropOldest() {
+        BoundedMailbox mailbox = mailbox(OverflowPolicy.DROP_OLDEST);
+        TickBroadcast tick = new TickBroadcast(1);
+        mailbox.offer(tick);
+        mailbox.offer(event1);
+        mailbox.offer(event2);
+        assertTrue(mailbox.offer(event3));
+        // The oldest event is dropped, the broadcast in front of it stays
+        assertEquals(event1, dropped.get(0));
+        assertEquals(1, counters.get(OverflowPolicy.DROP_OLDEST).sum());
+        assertEquals(tick, mailbox.poll());
+        assertEquals(event2, mailbox.poll());
+        assertEquals(event3, mailbox.poll());
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    void testSpill() throws InterruptedException {
+        BoundedMailbox mailbox = mailbox(OverflowPolicy.SPILL);
+        mailbox.offer(event1);
+        mailbox.offer(event2);
+        assertTrue(mailbox.offer(event3));
+        TickBroadcast tick = new TickBroadcast(1);
+        mailbox.offer(tick);
+        assertEquals(1, counters.get(OverflowPolicy.SPILL).sum());
+        assertTrue(dropped.isEmpty());
+
+        // Spilled messages come back in order
+        assertEquals(4, mailbox.size());
+        assertEquals(event1, mailbox.take());
+        assertEquals(event2, mailbox.take());
+        assertEquals(event3, mailbox.take());
+        assertEquals(tick, mailbox.take());
+        assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    void testBlock() throws InterruptedException {
+        BoundedMailbox mailbox = mailbox(OverflowPolicy.BLOCK);
+        mailbox.offer(event1);
+        mailbox.offer(event2);
+        CountDownLatch sent = new CountDownLatch(1);
+        new Thread(() -> {
+            mailbox.offer(event3); // Blocks until the consumer takes a message
+            sent.countDown();
+        }).start();
+        Thread.sleep(50);
+        assertEquals(1, sent.getCount());
+        assertEquals(event1, mailbox.take());
+        sent.await();
+        assertEquals(1, counters.get(OverflowPolicy.BLOCK).sum());
+        assertEquals(event2, mailbox.take());
+        assertEquals(event3, mailbox.take());
+        assertEquals(2, mailbox.remainingCapacity());
+    }
+
+    @Test
+    void testBusResolvesDroppedEvents() {
+        MessageBusImpl bus = new MessageBusImpl(MailboxType.LINKED, false);
+        MicroService service = new TimeService(1, 1);
+        bus.setMailboxLimit(service.getName(), 1, OverflowPolicy.DROP_NEWEST);
+        bus.register(service);
+        bus.subscribeEvent(PoseEvent.class, service);
+        Future<Boolean> kept = bus.sendEvent(event1);
+        Future<Boolean> lost = bus.sendEvent(event2);
+        assertFalse(kept.isDone());
+        assertTrue(lost.isDone());
+        assertNull(lost.get());
+        assertEquals(1, bus.getOverflowCount(OverflowPolicy.DROP_NEWEST));
+        bus.unregister(service);
+    }
+}
@@ -0,0 +1,80 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.example.messages.ExampleBroadcast;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcastLogTest {
+
+    /**
+     * Tests that the log counts the readers of every type, and that a publisher only
+     * wakes up the parked readers of the published type, once.
+     */
+    @Test
+    void testParkedReaders() {
+        BroadcastLog log = new BroadcastLog();
+        AtomicInteger tickWakeUps = new AtomicInteger();
+        AtomicInteger exampleWakeUps = new AtomicInteger();
+        BroadcastLog.Reader tickReader = log.newReader(tickWakeUps::incrementAndGet, false);
+        BroadcastLog.Reader exampleReader = log.newReader(exampleWakeUps::incrementAndGet, false);
+        tickReader.subscribe(TickBroadcast.class);
+        tickReader.subscribe(TickBroadcast.class);
+        exampleReader.subscribe(ExampleBroadcast.class);
+        assertEquals(1, log.readerCount(TickBroadcast.class));
+        assertEquals(1, log.readerCount(ExampleBroadcast.class));
+
+        // Test that a running reader is not woken up
+        log.publish(new TickBroadcast(1));
+        log.wakeUpParked(TickBroadcast.class);
+        assertEquals(0, tickWakeUps.get());
+
+        // Test that only the parked readers of the type are woken up, once
+        tickReader.park();
+        exampleReader.park();
+        log.publish(new TickBroadcast(2));
+        log.wakeUpParked(TickBroadcast.class);
+        log.wakeUpParked(TickBroadcast.class);
+        assertEquals(1, tickWakeUps.get());
+        assertEquals(0, exampleWakeUps.get());
+
+        // Test that a closed reader is no longer counted nor woken up
+        exampleReader.close();
+        assertEquals(0, log.readerCount(ExampleBroadcast.class));
+        log.publish(new ExampleBroadcast("1"));
+        log.wakeUpParked(ExampleBroadcast.class);
+        assertEquals(0, exampleWakeUps.get());
+    }
+
+    /**
+     * Tests that a reader skips the broadcasts of a type published before it subscribed
+     * to that type, which were not counted for it.
+     */
+    @Test
+    void testSubscribedLate() {
+        BroadcastLog log = new BroadcastLog();
+        InFlightMessages inFlight = new InFlightMessages();
+        inFlight.enable();
+        BroadcastLog.Reader early = log.newReader(() -> { }, false);
+        BroadcastLog.Reader late = log.newReader(() -> { }, false);
+        early.subscribe(ExampleBroadcast.class);
+        late.subscribe(TickBroadcast.class);
+        assertEquals(1, log.publish(new ExampleBroadcast("1"), inFlight));
+
+        // Test that the broadcast published before the subscription is not delivered
+        late.subscribe(ExampleBroadcast.class);
+        assertFalse(late.hasPending());
+        assertNull(late.peek());
+
+        // Test that the later broadcasts of the type are delivered, and counted for the reader
+        ExampleBroadcast second = new ExampleBroadcast("2");
+        assertEquals(2, log.publish(second, inFlight));
+        assertTrue(late.hasPending());
+        assertSame(second, late.peek());
+        assertEquals(1, late.close());
+        assertEquals(2, early.close());
+    }
+}
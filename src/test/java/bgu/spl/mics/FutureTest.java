@@ -0,0 +1,111 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FutureTest {
+    private Future<Integer> future;
+
+    @BeforeEach
+    void setUp() {
+        future = new Future<>();
+    }
+
+    @Test
+    void testResolveOnce() {
+        assertFalse(future.isDone());
+        future.resolve(1);
+        future.resolve(2); // Ignored, the first resolution wins
+        assertTrue(future.isDone());
+        assertEquals(1, future.get());
+        assertEquals(1, future.get(10, TimeUnit.MILLISECONDS));
+
+        // Test that null is a valid result
+        Future<Integer> empty = new Future<>();
+        empty.resolve(null);
+        assertTrue(empty.isDone());
+        assertNull(empty.get());
+    }
+
+    @Test
+    void testGetWaitsForResolve() {
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            future.resolve(42);
+        }).start();
+        assertEquals(42, future.get());
+
+        // Test that a timed get gives up
+        assertNull(new Future<Integer>().get(20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testTimedOutGetsLeaveNothingBehind() {
+        future.onComplete(result -> {});
+        for (int i = 0; i < 100; i++) {
+            assertNull(future.get(1, TimeUnit.MICROSECONDS));
+        }
+
+        // Test that only the registered action is left waiting
+        assertEquals(1, future.pendingContinuations());
+        future.resolve(3);
+        assertEquals(0, future.pendingContinuations());
+        assertEquals(3, future.get(1, TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    void testContinuations() {
+        List<Integer> seen = new ArrayList<>();
+        future.onComplete(seen::add);
+        future.onComplete(result -> seen.add(result * 10));
+        Future<String> text = future.thenApply(result -> "#" + result);
+        Future<Integer> failed = future.thenApply(result -> 1 / (result - 7));
+        assertTrue(seen.isEmpty());
+        assertFalse(text.isDone());
+
+        // Continuations run in registration order when the future is resolved
+        future.resolve(7);
+        assertEquals(7, seen.get(0));
+        assertEquals(70, seen.get(1));
+        assertEquals("#7", text.get());
+        assertTrue(failed.isDone());
+        assertNull(failed.get());
+
+        // A continuation registered after resolution runs right away
+        future.onComplete(result -> seen.add(result + 1));
+        assertEquals(8, seen.get(2));
+    }
+
+    @Test
+    void testCompleteOnTimeout() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        future.completeOnTimeout(-1, 20, TimeUnit.MILLISECONDS).onComplete(result -> fired.countDown());
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertEquals(-1, future.get());
+
+        // Test that a future resolved in time keeps its result
+        Future<Integer> inTime = new Future<>();
+        inTime.completeOnTimeout(-1, 20, TimeUnit.MILLISECONDS);
+        inTime.resolve(5);
+        Thread.sleep(50);
+        assertEquals(5, inTime.get());
+
+        // Test that the timers of futures resolved in time do not pile up
+        for (int i = 0; i < 100; i++) {
+            Future<Integer> resolved = new Future<>();
+            resolved.completeOnTimeout(-1, 1, TimeUnit.HOURS);
+            resolved.resolve(i);
+        }
+        assertEquals(0, Future.pendingTimeouts());
+    }
+}
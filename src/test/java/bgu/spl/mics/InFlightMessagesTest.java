@@ -0,0 +1,45 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightMessagesTest {
+
+    @Test
+    void testQuiescentOnceEverythingHandled() throws InterruptedException {
+        InFlightMessages inFlight = new InFlightMessages();
+        inFlight.enable();
+        inFlight.sent(3);
+        Thread handler = new Thread(() -> {
+            inFlight.done(1);
+            inFlight.sent(1); // A callback sending a message before its own message is uncounted
+            inFlight.done(1);
+            inFlight.done(2);
+        });
+        handler.start();
+        assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+        handler.join();
+        assertTrue(inFlight.await(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testTimesOutWhileInFlight() {
+        InFlightMessages inFlight = new InFlightMessages();
+        inFlight.enable();
+        inFlight.sent(1);
+        assertFalse(inFlight.await(20, TimeUnit.MILLISECONDS));
+        inFlight.done(1);
+        assertTrue(inFlight.await(20, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testDisabledCountsNothing() {
+        InFlightMessages inFlight = new InFlightMessages();
+        inFlight.sent(5);
+        assertFalse(inFlight.isEnabled());
+        assertTrue(inFlight.await(20, TimeUnit.MILLISECONDS));
+    }
+}
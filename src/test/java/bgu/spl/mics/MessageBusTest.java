@@ -10,7 +10,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -416,4 +420,319 @@ class MessageBusTest {
         // Clean up
         messageBus.unregister(microService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void awaitMessages() throws InterruptedException {
+        MicroService microService = new TimeService(1, 1);
+        messageBus.register(microService);
+        messageBus.subscribeEvent(PoseEvent.class, microService);
+        messageBus.subscribeBroadcast(TickBroadcast.class, microService);
+
+        // Test draining every queued message in order
+        PoseEvent event1 = new PoseEvent(new Pose(1, 0, 0, 0));
+        TickBroadcast tick = new TickBroadcast(1);
+        PoseEvent event2 = new PoseEvent(new Pose(2, 0, 0, 0));
+        messageBus.sendEvent(event1);
+        messageBus.sendBroadcast(tick);
+        messageBus.sendEvent(event2);
+        List<Message> batch = new ArrayList<>();
+        assertEquals(3, messageBus.awaitMessages(microService, batch));
+        assertEquals(event1, batch.get(0));
+        assertEquals(tick, batch.get(1));
+        assertEquals(event2, batch.get(2));
+        assertTrue(messageBus.getMicroServicesQueues().get(microService).isEmpty());
+
+        // Test that a batch waits for the first message
+        batch.clear();
+        PoseEvent late = new PoseEvent(new Pose(3, 0, 0, 0));
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            messageBus.sendEvent(late);
+        }).start();
+        assertEquals(1, messageBus.awaitMessages(microService, batch));
+        assertEquals(late, batch.get(0));
+
+        // Test throwing IllegalStateException for unregistered MicroService
+        MicroService unregisteredService = new TimeService(2, 2);
+        assertThrows(IllegalStateException.class, () -> messageBus.awaitMessages(unregisteredService, batch));
+    }
+
+    /**
+     * Tests that subscribing and unregistering keep the round-robin order: a new subscriber
+     * joins at the end of the rotation, and a leaving one hands its turn to the next in line.
+     */
+    @Test
+    void testRoundRobinOrder() {
+        MessageBusImpl bus = new MessageBusImpl(MailboxType.MPSC, false);
+        MicroService a = new TimeService(1, 1);
+        MicroService b = new TimeService(1, 1);
+        MicroService c = new TimeService(1, 1);
+        MicroService d = new TimeService(1, 1);
+        for (MicroService m : new MicroService[]{a, b, c}) {
+            bus.register(m);
+            bus.subscribeEvent(ExampleEvent.class, m);
+        }
+        assertReceivedBy(bus, a);
+
+        // Test that a new subscriber comes after the ones still waiting for their turn
+        bus.register(d);
+        bus.subscribeEvent(ExampleEvent.class, d);
+        assertReceivedBy(bus, b);
+
+        // Test that the turn of a leaving subscriber goes to the next one in line
+        bus.unregister(c);
+        assertReceivedBy(bus, a);
+        assertReceivedBy(bus, d);
+        assertReceivedBy(bus, b);
+        assertReceivedBy(bus, a);
+    }
+
+    /**
+     * Sends an event and checks that it was queued for the expected subscriber only.
+     */
+    private static void assertReceivedBy(MessageBusImpl bus, MicroService expected) {
+        ExampleEvent event = new ExampleEvent("order");
+        assertNotNull(bus.sendEvent(event));
+        assertSame(event, bus.getMicroServicesQueues().get(expected).poll());
+        for (BlockingQueue<Message> queue : bus.getMicroServicesQueues().values()) {
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    /**
+     * Tests that concurrent senders spread the events evenly over the subscribers:
+     * picking a subscriber is wait-free, yet no turn is lost or taken twice.
+     */
+    @Test
+    void testConcurrentRoundRobin() throws InterruptedException {
+        MessageBusImpl bus = new MessageBusImpl(MailboxType.MPSC, false);
+        int subscribers = 4;
+        int senders = 8;
+        int eventsPerSender = 1000;
+        List<MicroService> services = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            MicroService service = new TimeService(1, 1);
+            bus.register(service);
+            bus.subscribeEvent(ExampleEvent.class, service);
+            services.add(service);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < senders; t++) {
+            Thread sender = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                }
+                for (int i = 0; i < eventsPerSender; i++) {
+                    if (i % 2 == 0) {
+                        bus.sendEvent(new ExampleEvent("concurrent"));
+                    } else {
+                        bus.sendEventNoReply(new ExampleEvent("concurrent"));
+                    }
+                }
+            });
+            sender.start();
+            threads.add(sender);
+        }
+        start.countDown();
+        for (Thread sender : threads) {
+            sender.join();
+        }
+        for (MicroService service : services) {
+            assertEquals(senders * eventsPerSender / subscribers, bus.getMicroServicesQueues().get(service).size());
+        }
+    }
+
+    /**
+     * Tests that a reader unregistering while broadcasts are published uncounts exactly
+     * the broadcasts it was counted for, so the bus neither stays busy nor goes idle early.
+     */
+    @Test
+    void testUnregisterWhilePublishing() throws InterruptedException {
+        MessageBusImpl logBus = new MessageBusImpl(MailboxType.MPSC, true);
+        logBus.enableQuiescenceTracking();
+        for (int round = 0; round < 200; round++) {
+            MicroService reader = new TimeService(1, 1);
+            logBus.register(reader);
+            logBus.subscribeBroadcast(TickBroadcast.class, reader);
+            CountDownLatch start = new CountDownLatch(1);
+            Thread publisher = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                }
+                for (int tick = 1; tick <= 20; tick++) {
+                    logBus.sendBroadcast(new TickBroadcast(tick));
+                }
+            });
+            publisher.start();
+            start.countDown();
+            logBus.unregister(reader);
+            publisher.join();
+        }
+        assertTrue(logBus.awaitQuiescence(1, TimeUnit.SECONDS));
+
+        // Test that nothing was uncounted twice: a pending broadcast keeps the bus busy
+        MicroService last = new TimeService(1, 1);
+        logBus.register(last);
+        logBus.subscribeBroadcast(TickBroadcast.class, last);
+        logBus.sendBroadcast(new TickBroadcast(1));
+        assertFalse(logBus.awaitQuiescence(20, TimeUnit.MILLISECONDS));
+        assertNotNull(logBus.awaitMessage(last));
+        logBus.handled();
+        assertTrue(logBus.awaitQuiescence(20, TimeUnit.MILLISECONDS));
+        logBus.unregister(last);
+    }
+
+    @Test
+    void testSharedBroadcastLog() throws InterruptedException {
+        MessageBusImpl logBus = new MessageBusImpl(MailboxType.MPSC, true);
+        MicroService first = new TimeService(1, 1);
+        MicroService second = new TimeService(1, 1);
+        logBus.register(first);
+        logBus.register(second);
+        logBus.subscribeBroadcast(TickBroadcast.class, first);
+        logBus.subscribeBroadcast(TickBroadcast.class, second);
+        logBus.subscribeBroadcast(ExampleBroadcast.class, second);
+        logBus.subscribeEvent(PoseEvent.class, first);
+
+        // Test that broadcasts are not copied into the subscribers' queues
+        TickBroadcast tick1 = new TickBroadcast(1);
+        ExampleBroadcast example = new ExampleBroadcast("1");
+        logBus.sendBroadcast(tick1);
+        logBus.sendBroadcast(example);
+        assertTrue(logBus.getMicroServicesQueues().get(first).isEmpty());
+        assertTrue(logBus.getMicroServicesQueues().get(second).isEmpty());
+
+        // Test that each subscriber reads only its own types, in publishing order
+        assertEquals(tick1, logBus.awaitMessage(first));
+        assertEquals(tick1, logBus.awaitMessage(second));
+        assertEquals(example, logBus.awaitMessage(second));
+
+        // Test that an event sent before a broadcast is received first
+        PoseEvent pose = new PoseEvent(new Pose(1, 0, 0, 0));
+        TickBroadcast tick2 = new TickBroadcast(2);
+        logBus.sendEvent(pose);
+        logBus.sendBroadcast(tick2);
+        assertEquals(pose, logBus.awaitMessage(first));
+        assertEquals(tick2, logBus.awaitMessage(first));
+
+        // Test that a broadcast published between two events is received between them
+        PoseEvent before = new PoseEvent(new Pose(2, 0, 0, 0));
+        PoseEvent after = new PoseEvent(new Pose(3, 0, 0, 0));
+        TickBroadcast between = new TickBroadcast(2);
+        logBus.sendEvent(before);
+        logBus.sendBroadcast(between);
+        logBus.sendEvent(after);
+        assertEquals(before, logBus.awaitMessage(first));
+        assertEquals(between, logBus.awaitMessage(first));
+        assertEquals(after, logBus.awaitMessage(first));
+
+        // Test that a waiting subscriber is woken up by a broadcast
+        TickBroadcast tick3 = new TickBroadcast(3);
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            logBus.sendBroadcast(tick3);
+        }).start();
+        assertEquals(tick3, logBus.awaitMessage(first));
+
+        // Test that an unregistered subscriber stops reading the log
+        logBus.unregister(second);
+        logBus.sendBroadcast(new TickBroadcast(4));
+        assertThrows(IllegalStateException.class, () -> logBus.awaitMessage(second));
+        logBus.unregister(first);
+    }
+
+    @Test
+    void testTickCoalescing() throws InterruptedException {
+        List<int[]> ranges = new ArrayList<>();
+        MicroService lagging = new MicroService("Lagging") {
+            {
+                setCoalescing(true);
+            }
+
+            @Override
+            protected void initialize() {
+                subscribeBroadcast(TickBroadcast.class, tick -> ranges.add(new int[]{tick.getFromTime(), tick.getCurrentTime()}));
+                subscribeBroadcast(ExampleBroadcast.class, stop -> terminate());
+                // Published before the event loop takes its first message
+                sendBroadcast(new TickBroadcast(1));
+                sendBroadcast(new TickBroadcast(2));
+                sendBroadcast(new TickBroadcast(3));
+                sendBroadcast(new TickBroadcast(5));
+                sendBroadcast(new ExampleBroadcast("stop"));
+            }
+        };
+        Thread thread = new Thread(lagging);
+        thread.start();
+        thread.join(1000);
+
+        // Test that consecutive ticks are delivered once, without a batch, and a gap starts a new range
+        assertFalse(thread.isAlive());
+        assertEquals(1, lagging.getLastBatchSize());
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new int[]{1, 3}, ranges.get(0));
+        assertArrayEquals(new int[]{5, 5}, ranges.get(1));
+    }
+
+    @Test
+    void testEventCarriesFuture() throws InterruptedException {
+        messageBus.register(testMicroService);
+        messageBus.subscribeEvent(PoseEvent.class, testMicroService);
+
+        // Test that the future travels with the event instead of the shared map
+        Future<Boolean> future = messageBus.sendEvent(poseEvent);
+        assertNotNull(future);
+        assertFalse(messageBus.getEventAndFutureUnresolved().containsKey(poseEvent));
+        assertEquals(poseEvent, messageBus.awaitMessage(testMicroService));
+        messageBus.complete(poseEvent, true);
+        assertTrue(future.get());
+        messageBus.complete(poseEvent, false); // Already completed, ignored
+        assertTrue(future.get());
+
+        // Test sending without a future
+        PoseEvent noReply = new PoseEvent(new Pose(2, 0, 0, 0));
+        assertTrue(messageBus.sendEventNoReply(noReply));
+        assertEquals(noReply, messageBus.awaitMessage(testMicroService));
+        messageBus.complete(noReply, true);
+        assertTrue(messageBus.getEventAndFutureUnresolved().isEmpty());
+        assertFalse(messageBus.sendEventNoReply(new ExampleEvent("nobody")));
+    }
+
+    @Test
+    void testAwaitMicroServices() throws InterruptedException {
+        messageBus.expectMicroServices(2);
+        List<MicroService> services = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            services.add(new MicroService("Starting" + i) {
+                @Override
+                protected void initialize() {
+                    subscribeBroadcast(TickBroadcast.class, tick -> terminate());
+                }
+            });
+        }
+
+        // Test that the startup is not over until every microservice is initialized
+        Thread first = new Thread(services.get(0));
+        first.start();
+        assertFalse(messageBus.awaitMicroServices(50, TimeUnit.MILLISECONDS));
+        Thread second = new Thread(services.get(1));
+        second.start();
+        assertTrue(messageBus.awaitMicroServices(1, TimeUnit.SECONDS));
+
+        // Test that both are subscribed once released
+        assertEquals(2, messageBus.getBroadcastSubscribers().get(TickBroadcast.class).size());
+        messageBus.sendBroadcast(new TickBroadcast(1));
+        first.join(1000);
+        second.join(1000);
+        assertFalse(first.isAlive());
+        assertFalse(second.isAlive());
+    }
+}
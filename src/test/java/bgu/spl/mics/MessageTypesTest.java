@@ -0,0 +1,60 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.example.messages.ExampleBroadcast;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTypesTest {
+
+    @Test
+    void testIdsAreStableAndDistinct() {
+        int tick = MessageTypes.idOf(TickBroadcast.class);
+        int pose = MessageTypes.idOf(PoseEvent.class);
+        assertNotEquals(tick, pose);
+        assertEquals(tick, MessageTypes.idOf(TickBroadcast.class));
+        assertTrue(tick < MessageTypes.count() && pose < MessageTypes.count());
+    }
+
+    @Test
+    void testConcurrentFirstLookup() throws InterruptedException {
+        // Every thread gets the same id for a class seen for the first time
+        int threadCount = 8;
+        AtomicIntegerArray seen = new AtomicIntegerArray(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ignored) {
+                }
+                seen.set(index, MessageTypes.idOf(ExampleBroadcast.class));
+                done.countDown();
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        for (int i = 1; i < threadCount; i++) {
+            assertEquals(seen.get(0), seen.get(i));
+        }
+    }
+
+    @Test
+    void testTypeTable() {
+        TypeTable<String> table = new TypeTable<>();
+        assertNull(table.get(3));
+        assertNull(table.get(1000));
+        table.put(3, "three");
+        table.put(1000, "thousand"); // Grows the table
+        assertEquals("three", table.get(3));
+        assertEquals("thousand", table.get(1000));
+        assertNull(table.get(999));
+    }
+}
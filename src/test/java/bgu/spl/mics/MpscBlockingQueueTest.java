@@ -0,0 +1,107 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscBlockingQueueTest {
+    private MpscBlockingQueue<Integer> queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new MpscBlockingQueue<>();
+    }
+
+    @Test
+    void testOfferAndPoll() {
+        // Test polling an empty queue
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+
+        // Test FIFO order
+        queue.offer(1);
+        queue.offer(2);
+        queue.offer(3);
+        assertEquals(3, queue.size());
+        assertTrue(queue.contains(2));
+        assertEquals(1, queue.peek());
+        assertEquals(1, queue.poll());
+        assertEquals(2, queue.poll());
+        assertFalse(queue.contains(1));
+        assertEquals(3, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+
+        // Test null elements are rejected
+        assertThrows(NullPointerException.class, () -> queue.offer(null));
+    }
+
+    @Test
+    void testDrainTo() {
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        List<Integer> drained = new LinkedList<>();
+        assertEquals(4, queue.drainTo(drained, 4));
+        assertEquals(6, queue.size());
+        assertEquals(6, queue.drainTo(drained));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, drained.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testTakeBlocksUntilOffer() throws InterruptedException {
+        // Test that take() parks until a producer offers an element
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            queue.offer(42);
+        }).start();
+        assertEquals(42, queue.take());
+
+        // Test that a timed poll gives up
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+
+        // Test that an interrupted consumer stops waiting
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, () -> queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int perProducer = 10000;
+        CountDownLatch latch = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(base + i);
+                }
+                latch.countDown();
+            }).start();
+        }
+        // Every element is received exactly once and each producer's order is kept
+        int[] lastSeen = new int[producers];
+        Arrays.fill(lastSeen, -1);
+        for (int i = 0; i < producers * perProducer; i++) {
+            int value = queue.take();
+            int producer = value / perProducer;
+            assertTrue(value % perProducer > lastSeen[producer]);
+            lastSeen[producer] = value % perProducer;
+        }
+        latch.await();
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,170 @@
+package bgu.spl.mics;
+
+import bgu.spl.mics.application.services.TimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingStrategyTest {
+    private MicroService first;
+    private MicroService second;
+    private MicroService third;
+    private Map<MicroService, Integer> loads;
+
+    @BeforeEach
+    void setUp() {
+        first = new TimeService(1, 1);
+        second = new TimeService(1, 1);
+        third = new TimeService(1, 1);
+        loads = new HashMap<>();
+    }
+
+    private RoundRobinSubscribers group(RoutingStrategy strategy, Map<MicroService, Integer> weights) {
+        RoundRobinSubscribers group = new RoundRobinSubscribers(ms -> weights.getOrDefault(ms, 1));
+        group.setStrategy(strategy);
+        group.add(first);
+        group.add(second);
+        group.add(third);
+        return group;
+    }
+
+    private int loadOf(MicroService ms) {
+        return loads.getOrDefault(ms, 0);
+    }
+
+    @Test
+    void testLeastQueueDepth() {
+        RoundRobinSubscribers group = group(RoutingStrategy.LEAST_QUEUE_DEPTH, new HashMap<>());
+        loads.put(first, 5);
+        loads.put(second, 1);
+        loads.put(third, 3);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(second, group.next(this::loadOf));
+        }
+
+        // Test that idle subscribers share the events
+        loads.clear();
+        Set<MicroService> picked = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            picked.add(group.next(this::loadOf));
+        }
+        assertEquals(3, picked.size());
+    }
+
+    @Test
+    void testPowerOfTwoChoices() {
+        RoundRobinSubscribers group = group(RoutingStrategy.POWER_OF_TWO_CHOICES, new HashMap<>());
+        loads.put(first, 100);
+        loads.put(second, 100);
+        loads.put(third, 0);
+        // The most loaded subscribers are picked only when both choices are loaded
+        int toThird = 0;
+        for (int i = 0; i < 300; i++) {
+            if (group.next(this::loadOf) == third) {
+                toThird++;
+            }
+        }
+        assertTrue(toThird > 150);
+
+        // Test a single subscriber
+        RoundRobinSubscribers single = new RoundRobinSubscribers();
+        single.setStrategy(RoutingStrategy.POWER_OF_TWO_CHOICES);
+        single.add(first);
+        assertEquals(first, single.next(this::loadOf));
+    }
+
+    @Test
+    void testWeightedRoundRobin() {
+        Map<MicroService, Integer> weights = new HashMap<>();
+        weights.put(first, 3);
+        RoundRobinSubscribers group = group(RoutingStrategy.WEIGHTED_ROUND_ROBIN, weights);
+        Map<MicroService, Integer> received = new HashMap<>();
+        MicroService previous = null;
+        int repeats = 0;
+        for (int i = 0; i < 50; i++) {
+            MicroService ms = group.next(this::loadOf);
+            received.merge(ms, 1, Integer::sum);
+            if (ms == previous) {
+                repeats++;
+            }
+            previous = ms;
+        }
+        // A cycle has 5 slots: 3 for the first subscriber, 1 for each of the others
+        assertEquals(30, received.get(first));
+        assertEquals(10, received.get(second));
+        assertEquals(10, received.get(third));
+        assertTrue(repeats < 20); // Interleaved rather than in bursts
+
+        // Test that the schedule follows membership and weight changes
+        group.remove(first);
+        weights.put(third, 2);
+        group.reweigh();
+        received.clear();
+        for (int i = 0; i < 30; i++) {
+            received.merge(group.next(this::loadOf), 1, Integer::sum);
+        }
+        assertNull(received.get(first));
+        assertEquals(10, received.get(second));
+        assertEquals(20, received.get(third));
+    }
+
+    @Test
+    void testKeyAffinity() {
+        RoundRobinSubscribers group = group(RoutingStrategy.KEY_AFFINITY, new HashMap<>());
+        Map<String, MicroService> owners = new HashMap<>();
+        for (int camera = 0; camera < 200; camera++) {
+            String key = "Camera" + camera;
+            MicroService owner = group.next(keyed(key), this::loadOf);
+            owners.put(key, owner);
+            // The same key always goes to the same subscriber
+            assertEquals(owner, group.next(keyed(key), this::loadOf));
+        }
+        assertEquals(3, new HashSet<>(owners.values()).size());
+
+        // Test that only the keys of a leaving subscriber move
+        group.remove(second);
+        for (Map.Entry<String, MicroService> entry : owners.entrySet()) {
+            MicroService owner = group.next(keyed(entry.getKey()), this::loadOf);
+            if (entry.getValue() != second) {
+                assertEquals(entry.getValue(), owner);
+            } else {
+                assertNotEquals(second, owner);
+            }
+        }
+
+        // Test that events without a key are routed round robin
+        Set<MicroService> picked = new HashSet<>();
+        picked.add(group.next(null, this::loadOf));
+        picked.add(group.next(keyed(null), this::loadOf));
+        assertEquals(2, picked.size());
+    }
+
+    /**
+     * Tests that every strategy returns null over an empty group, and still picks from the
+     * subscribers read by the caller once the group was emptied behind its back.
+     */
+    @Test
+    void testEmptyGroup() {
+        for (RoutingStrategy strategy : RoutingStrategy.values()) {
+            RoundRobinSubscribers group = group(strategy, new HashMap<>());
+            group.next(keyed("Camera1"), this::loadOf); // Builds the ring of KEY_AFFINITY
+            MicroService[] members = group.snapshot();
+            group.remove(first);
+            group.remove(second);
+            group.remove(third);
+            assertNull(group.next(keyed("Camera1"), this::loadOf), strategy.name());
+            assertNull(strategy.pick(group, group.snapshot(), keyed("Camera1"), this::loadOf), strategy.name());
+            assertNotNull(strategy.pick(group, members, keyed("Camera1"), this::loadOf), strategy.name());
+        }
+    }
+
+    private static KeyedEvent<Boolean> keyed(Object key) {
+        return () -> key;
+    }
+}
@@ -0,0 +1,138 @@
+package bgu.spl.mics.application.objects;
+
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CameraTest {
+
+    private Camera camera;
+    private StampedDetectedObjects frame2;
+    private StampedDetectedObjects frame2Again;
+    private StampedDetectedObjects frame5;
+
+    @BeforeEach
+    void setUp() {
+        frame2 = new StampedDetectedObjects(2, Arrays.asList(new DetectedObject("Wall_1", "Wall")));
+        frame2Again = new StampedDetectedObjects(2, Arrays.asList(new DetectedObject("Chair_1", "Chair")));
+        frame5 = new StampedDetectedObjects(5, Arrays.asList(new DetectedObject("Door_1", "Door")));
+        List<StampedDetectedObjects> frames = new LinkedList<>();
+        // Out of order on purpose, the camera sorts its detections by time
+        frames.add(frame5);
+        frames.add(frame2);
+        frames.add(frame2Again);
+        camera = new Camera(1, 2, frames);
+    }
+
+    /**
+     * Tests that every frame of a tick is taken, and every frame ready at a tick is sent,
+     * and that the camera goes down once everything was sent.
+     */
+    @Test
+    void testFramesOfTheSameTick() {
+        assertEquals(2, camera.nextWorkTick(0));
+        assertTrue(camera.processTick(new TickBroadcast(2)).isEmpty());
+        assertTrue(camera.getDetectedObjectsList().contains(frame5));
+        assertEquals(1, camera.getDetectedObjectsList().size());
+        assertEquals(4, camera.nextWorkTick(2));
+
+        List<DetectObjectsEvent> events = camera.processTick(new TickBroadcast(4));
+        assertEquals(2, events.size());
+        assertEquals(frame2, events.get(0).getStampedDetectedObjects());
+        assertEquals(frame2Again, events.get(1).getStampedDetectedObjects());
+        assertEquals(5, camera.nextWorkTick(4));
+
+        assertTrue(camera.processTick(new TickBroadcast(5)).isEmpty());
+        assertEquals(1, camera.processTick(new TickBroadcast(7)).size());
+        assertEquals(STATUS.DOWN, camera.getStatus());
+        assertEquals(TickSchedule.NO_WORK, camera.nextWorkTick(7));
+    }
+
+    /**
+     * Tests that a frame whose tick was skipped is taken at the next tick processed,
+     * and sent as soon as its release tick has passed.
+     */
+    @Test
+    void testSkippedTicks() {
+        camera.processTick(new TickBroadcast(1));
+        List<DetectObjectsEvent> events = camera.processTick(new TickBroadcast(6));
+        assertEquals(2, events.size());
+        assertTrue(camera.getDetectedObjectsList().isEmpty());
+        assertEquals(1, camera.processTick(new TickBroadcast(7)).size());
+        assertEquals(STATUS.DOWN, camera.getStatus());
+    }
+
+    /**
+     * Tests that the camera stops at the tick of its first "ERROR" object.
+     */
+    @Test
+    void testError() {
+        List<StampedDetectedObjects> frames = new LinkedList<>();
+        frames.add(frame2);
+        frames.add(new StampedDetectedObjects(3, Arrays.asList(new DetectedObject("ERROR", "Camera Disconnected"))));
+        frames.add(frame5);
+        Camera faulty = new Camera(2, 0, frames);
+        assertEquals(1, faulty.processTick(new TickBroadcast(1, 2)).size());
+        assertTrue(faulty.processTick(new TickBroadcast(3)).isEmpty());
+        assertEquals(STATUS.ERROR, faulty.getStatus());
+        assertEquals(frame2, faulty.getLastDetectedObjects());
+    }
+
+    /**
+     * Tests that a streamed detection older than the one read before it is skipped,
+     * while detections of the same time are kept.
+     */
+    @Test
+    void testFramesOutOfOrder() {
+        List<StampedDetectedObjects> frames = new LinkedList<>();
+        frames.add(frame2);
+        frames.add(frame5);
+        frames.add(frame2Again); // Older than frame5
+        frames.add(new StampedDetectedObjects(5, Arrays.asList(new DetectedObject("Door_2", "Door"))));
+        Camera streaming = new Camera(4, 0, frames.iterator(), 1);
+        assertEquals(1, streaming.processTick(new TickBroadcast(1, 2)).size());
+        List<DetectObjectsEvent> events = streaming.processTick(new TickBroadcast(3, 5));
+        assertEquals(2, events.size());
+        assertEquals(frame5, events.get(0).getStampedDetectedObjects());
+        assertEquals(STATUS.DOWN, streaming.getStatus());
+    }
+
+    /**
+     * Tests a camera streaming its detections from the camera data file through a window
+     * of one detection: every detection is still taken and sent at its tick, the camera
+     * never holds more than one detection ahead, and it stops at its error.
+     */
+    @Test
+    void testStreamingWindow() {
+        Path cameraData = Paths.get("src/test/resources/camera_data_toTest.json");
+        CameraFrameReader missing = new CameraFrameReader(cameraData, "camera3", new Gson());
+        assertFalse(missing.foundCamera());
+        assertFalse(missing.hasNext());
+
+        CameraFrameReader frames = new CameraFrameReader(cameraData, "camera2", new Gson());
+        assertTrue(frames.foundCamera());
+        Camera streaming = new Camera(3, 1, frames, 1);
+        assertEquals(1, streaming.getDetectedObjectsList().size());
+        assertEquals(2, streaming.nextWorkTick(0));
+        assertTrue(streaming.processTick(new TickBroadcast(1, 2)).isEmpty());
+        assertEquals(1, streaming.getDetectedObjectsList().size());
+
+        List<DetectObjectsEvent> events = streaming.processTick(new TickBroadcast(3, 4));
+        assertEquals(3, events.size());
+        assertEquals("Door_1", events.get(2).getStampedDetectedObjects().getDetectedObjects().get(0).getId());
+        assertEquals(6, streaming.nextWorkTick(4));
+        assertTrue(streaming.processTick(new TickBroadcast(5, 6)).isEmpty());
+        assertEquals(STATUS.ERROR, streaming.getStatus());
+        assertFalse(frames.hasNext());
+    }
+}
@@ -0,0 +1,81 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiDarDataFileTest {
+
+    private static final String JSON_DATA = "src/test/resources/lidar_data_toTest.json";
+
+    @TempDir
+    Path directory;
+
+    private CloudPointColumns columns;
+    private LiDarDataFile mapped;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        columns = CloudPointColumns.readJson(JSON_DATA);
+        String binaryData = directory.resolve("lidar_data.bin").toString();
+        LiDarDataFile.write(columns, binaryData);
+        assertTrue(LiDarDataFile.isLiDarDataFile(binaryData));
+        assertFalse(LiDarDataFile.isLiDarDataFile(JSON_DATA));
+        mapped = LiDarDataFile.map(binaryData);
+    }
+
+    /**
+     * Tests that the mapped file has the same entries and cloud points as the JSON data.
+     */
+    @Test
+    void testSameEntries() {
+        assertEquals(columns.size(), mapped.size());
+        for (int entry = 0; entry < columns.size(); entry++) {
+            assertEquals(columns.getTime(entry), mapped.getTime(entry));
+            assertEquals(columns.getId(entry), mapped.getId(entry));
+            CloudPointsView expected = columns.getCloudPoints(entry);
+            CloudPointsView actual = mapped.getCloudPoints(entry);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getX(i), actual.getX(i));
+                assertEquals(expected.getY(i), actual.getY(i));
+            }
+        }
+    }
+
+    /**
+     * Tests the lookups by time and id, and the error times, of the mapped file.
+     */
+    @Test
+    void testLookups() {
+        CloudPointsView wall = mapped.find(4, "Wall_3");
+        assertNotNull(wall);
+        assertEquals(3.0451, wall.getX(0), 0.0001);
+        assertEquals(-0.17392, wall.getY(1), 0.0001);
+        assertNull(mapped.find(4, "Wall_1"));
+        assertNull(mapped.find(3, "Wall_3"));
+        assertNull(mapped.find(1000, "Wall_3"));
+
+        assertTrue(mapped.errorAt(8));
+        assertFalse(mapped.errorAt(4));
+        assertFalse(mapped.errorAt(1000));
+        assertEquals(8, mapped.nextErrorTime(0));
+        assertEquals(TickSchedule.NO_WORK, mapped.nextErrorTime(8));
+    }
+
+    /**
+     * Tests that a file in another format is rejected.
+     */
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path other = directory.resolve("other.bin");
+        Files.write(other, new byte[64]);
+        assertThrows(IOException.class, () -> LiDarDataFile.map(other.toString()));
+    }
+}
@@ -0,0 +1,81 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiDarWindowTest {
+
+    private static final String JSON_DATA = "src/test/resources/lidar_data_toTest.json";
+
+    private LiDarWindow window;
+    private AtomicInteger cameraFloor; // Oldest detection time the cameras may still send
+
+    @BeforeEach
+    void setUp() {
+        cameraFloor = new AtomicInteger(Integer.MAX_VALUE);
+        window = new LiDarWindow(JSON_DATA, 1, cameraFloor::get);
+        window.progress("worker", Integer.MAX_VALUE, 0);
+        window.start();
+    }
+
+    /**
+     * Tests that the lookups wait for the background thread and find what the whole file has.
+     */
+    @Test
+    void testLookups() {
+        CloudPointsView wall = window.find(4, "Wall_3");
+        assertNotNull(wall);
+        assertEquals(3.0451, wall.getX(0), 0.0001);
+        assertEquals(-0.17392, wall.getY(1), 0.0001);
+        assertNull(window.find(4, "Wall_1"));
+        assertNull(window.find(3, "Wall_3"));
+        assertNotNull(window.find(2, "Wall_1"));
+
+        assertFalse(window.errorAt(4));
+        assertTrue(window.errorAt(8));
+        assertEquals(8, window.nextErrorTime(0));
+        assertFalse(window.errorAt(1000));
+        assertEquals(TickSchedule.NO_WORK, window.nextErrorTime(8));
+    }
+
+    /**
+     * Tests that the times no worker can ask for are evicted, and that the reading stops
+     * at the horizon until a worker moves on.
+     */
+    @Test
+    void testEviction() {
+        assertNotNull(window.find(4, "Wall_3"));
+        window.progress("worker", 4, 5);
+        assertEquals(1, window.loadedSlices()); // Time 2 evicted, time 8 not read yet
+        int next = window.nextErrorTime(5);
+        assertTrue(next > 5 && next <= 8);
+
+        window.progress("worker", Integer.MAX_VALUE, 7);
+        assertTrue(window.errorAt(8));
+        assertEquals(1, window.loadedSlices()); // Only time 8 is left
+
+        window.done("worker");
+        assertEquals(0, window.loadedSlices());
+        assertEquals(TickSchedule.NO_WORK, window.nextErrorTime(8));
+    }
+
+    /**
+     * Tests that a camera lagging the workers by more than the window keeps the data
+     * its detections will ask for, until it moves on.
+     */
+    @Test
+    void testLaggingCamera() {
+        cameraFloor.set(2); // Still has a detection of time 2 to send
+        assertTrue(window.errorAt(8));
+        window.progress("worker", Integer.MAX_VALUE, 8);
+        assertNotNull(window.find(2, "Wall_1")); // 6 ticks behind the worker, with a window of 1
+
+        cameraFloor.set(Integer.MAX_VALUE);
+        window.progress("worker", Integer.MAX_VALUE, 8);
+        assertEquals(1, window.loadedSlices()); // Only time 8 is left
+    }
+}
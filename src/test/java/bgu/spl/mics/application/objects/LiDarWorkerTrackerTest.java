@@ -6,7 +6,12 @@ import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.messages.TrackedObjectsEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -77,6 +82,15 @@ class LiDarWorkerTrackerTest {
         }
     }
 
+    /**
+     * Tests that detectToTrack returns null for an object the database has no cloud points for.
+     */
+    @Test
+    void detectToTrackWithoutCloudPoints() {
+        assertNull(tracker.detectToTrack(detectedObject1, timeOfObject2, sender));
+        assertNull(tracker.detectToTrack(new DetectedObject("Chair_9", "Chair"), timeOfObject1, sender));
+    }
+
     /**
      * Tests the detectToTrack method of LiDarWorkerTracker with multiple objects.
      * This test verifies that the tracker correctly processes multiple DetectedObjects
@@ -171,4 +185,59 @@ class LiDarWorkerTrackerTest {
 
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests the nextWorkTick method of the LiDarWorkerTracker.
+     * While a camera is still up and no detection is waiting, the next tick the LiDAR
+     * has work at is the next "ERROR" object in its data base, if any.
+     */
+    @Test
+    void testNextWorkTick() {
+        assertEquals(8, tracker.nextWorkTick(1));
+        assertEquals(8, tracker.nextWorkTick(7));
+        assertEquals(TickSchedule.NO_WORK, tracker.nextWorkTick(8));
+    }
+
+    /**
+     * Tests the getCloudPointsData lookup of the LiDarDataBase by time and object id,
+     * including times and ids that are not in the data, and the columnar view it returns.
+     */
+    @Test
+    void testCloudPointsLookup() {
+        LiDarDataBase dataBase = tracker.getLiDarDataBase();
+        CloudPointsView points = dataBase.getCloudPointsData(timeOfObject2, detectedObject2.getId());
+        assertEquals(coordinates2.size(), points.size());
+        assertEquals(coordinates2.get(1).getX(), points.getX(1), 0.0001);
+        assertEquals(coordinates2.get(1).getY(), points.getY(1), 0.0001);
+        assertNull(dataBase.getCloudPointsData(timeOfObject2, detectedObject1.getId()));
+        assertNull(dataBase.getCloudPointsData(3, detectedObject1.getId()));
+        assertNull(dataBase.getCloudPointsData(-1, detectedObject1.getId()));
+        assertNull(dataBase.getCloudPointsData(1000, detectedObject1.getId()));
+    }
+
+    /**
+     * Tests that workers reading the same file, even through different paths, share one
+     * LiDarDataBase, and that the data is loaded again once every worker stopped.
+     * Uses a copy of the data, which no other test keeps loaded.
+     */
+    @Test
+    void testSharedDataBase(@TempDir Path directory) throws IOException {
+        Path data = Files.copy(Paths.get("src/test/resources/lidar_data_toTest.json"), directory.resolve("lidar_data.json"));
+        LiDarWorkerTracker first = new LiDarWorkerTracker(1, 1, data.toString(), 1);
+        LiDarWorkerTracker second = new LiDarWorkerTracker(2, 1, directory.resolve("../" + directory.getFileName() + "/lidar_data.json").toString(), 1);
+        LiDarDataBase shared = first.getLiDarDataBase();
+        assertSame(shared, second.getLiDarDataBase());
+        assertNotSame(shared, tracker.getLiDarDataBase());
+
+        first.setStatus(STATUS.DOWN);
+        assertNotNull(second.getLiDarDataBase().getCloudPointsData(timeOfObject2, detectedObject2.getId()));
+        second.setStatus(STATUS.ERROR);
+        second.setStatus(STATUS.DOWN); // Released only once
+
+        LiDarWorkerTracker reloaded = new LiDarWorkerTracker(3, 1, data.toString(), 1);
+        assertNotSame(shared, reloaded.getLiDarDataBase());
+        assertNotNull(reloaded.getLiDarDataBase().getCloudPointsData(timeOfObject2, detectedObject2.getId()));
+        assertThrows(IllegalStateException.class, shared::release);
+        reloaded.setStatus(STATUS.DOWN);
+    }
+}
@@ -0,0 +1,22 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickTimingsTest {
+
+    @Test
+    void testRecordsEveryTick() {
+        TickTimings timings = new TickTimings(10_000_000L, 3);
+        timings.record(100_000L, 0);
+        timings.record(200_000L, 5_000_000L);
+        timings.record(0, 0);
+        timings.record(1, 1); // Past the duration, ignored
+        assertEquals(3, timings.getTicks());
+        assertEquals(100_000L, timings.getMeanJitter());
+        assertEquals(200_000L, timings.getMaxJitter());
+        assertEquals(1, timings.getOverruns());
+        assertEquals(5_000_000L, timings.getMaxOverrun());
+    }
+}